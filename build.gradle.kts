@@ -8,6 +8,7 @@ plugins {
     id("com.gorylenko.gradle-git-properties") version "4.0.1"
     jacoco
     id("org.sonarqube") version "7.3.1.8318"
+    id("me.champeau.jmh") version "0.7.3"
 
     id("io.spring.dependency-management") version "1.1.7"
 }
@@ -71,6 +72,11 @@ tasks.withType<JavaCompile>() {
     ))
 }
 
+// The code generated by JMH is not held to the lint warnings of our own code.
+tasks.named<JavaCompile>("jmhCompileGeneratedClasses") {
+    options.compilerArgs.remove("-Werror")
+}
+
 tasks.withType<JavaExec>() {
     jvmArgs("--enable-preview")
 }
@@ -119,6 +125,12 @@ tasks.register<Test> ("integrationTest") {
      mustRunAfter(tasks.test)
 }
 
+jmh {
+    // Report the allocation rate next to the time of each benchmark
+    profilers.add("gc")
+    jvmArgsAppend.add("--enable-preview")
+}
+
 tasks.named("check") {
     dependsOn(tasks.named("integrationTest"))
 }
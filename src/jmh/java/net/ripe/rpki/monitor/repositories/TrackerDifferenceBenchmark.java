@@ -0,0 +1,66 @@
+package net.ripe.rpki.monitor.repositories;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Counting the difference of two trackers against materializing it. Run with
+ * the gc profiler (<code>./gradlew jmh</code>) to compare the allocation rate
+ * (<code>gc.alloc.rate.norm</code>): counting trackers that share their intern
+ * table should not allocate per missing object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class TrackerDifferenceBenchmark {
+    private static final List<Duration> THRESHOLDS = List.of(Duration.ZERO, Duration.ofSeconds(256), Duration.ofSeconds(3411));
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public RepositoryTracker.Storage storage;
+
+    @Param({"10000", "100000"})
+    public int objects;
+
+    private RepositoryTracker core;
+    private RepositoryTracker rrdp;
+    private Instant now;
+
+    @Setup
+    public void setup() {
+        var t = Instant.now();
+        var interner = ObjectInterner.of(storage);
+        core = RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ofSeconds(3600), storage, interner);
+        rrdp = RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600), storage, interner);
+
+        // Half of the objects of core are missing from rrdp.
+        var entries = IntStream.range(0, objects).mapToObj(TrackerDifferenceBenchmark::entry).toList();
+        core.update(t, entries.stream());
+        rrdp.update(t, entries.stream().limit(objects / 2));
+        now = t.plusSeconds(3600);
+    }
+
+    @Benchmark
+    public TrackerDifference countDifferences() {
+        return core.countDifferences(rrdp, now, THRESHOLDS);
+    }
+
+    @Benchmark
+    public TrackerDifference differences() {
+        return core.differences(rrdp, now, THRESHOLDS);
+    }
+
+    private static RepositoryEntry entry(int i) {
+        var sha256 = ByteBuffer.allocate(32).putInt(i).putInt(28, i).array();
+        return new RepositoryEntry("rsync://example.com/repository/DEFAULT/" + i + ".roa", sha256, Optional.empty(), Optional.empty());
+    }
+}
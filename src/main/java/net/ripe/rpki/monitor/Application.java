@@ -2,10 +2,13 @@ package net.ripe.rpki.monitor;
 
 import com.google.common.base.Joiner;
 import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.sdk.resources.Resource;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.monitor.certificateanalysis.CertificateAnalysisService;
@@ -13,8 +16,14 @@ import net.ripe.rpki.monitor.config.AppConfig;
 import net.ripe.rpki.monitor.config.RrdpConfig;
 import net.ripe.rpki.monitor.config.RsyncConfig;
 import net.ripe.rpki.monitor.expiration.ExpiryMonitorHooks;
+import net.ripe.rpki.monitor.metrics.CachedPrometheusScrapeEndpoint;
 import net.ripe.rpki.monitor.metrics.ObjectExpirationMetrics;
+import net.ripe.rpki.monitor.metrics.PrometheusScrapeCache;
+import net.ripe.rpki.monitor.metrics.PropagationMetrics;
+import net.ripe.rpki.monitor.metrics.RepositoryChurnMetrics;
+import net.ripe.rpki.monitor.metrics.TrackerStorageMetrics;
 import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService;
+import net.ripe.rpki.monitor.repositories.CoalescingHookDispatcher;
 import net.ripe.rpki.monitor.repositories.RepositoriesState;
 import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import net.ripe.rpki.monitor.util.http.WebClientBuilderFactory;
@@ -22,6 +31,7 @@ import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.tuple.Triple;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.actuate.autoconfigure.tracing.SdkTracerProviderBuilderCustomizer;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
@@ -51,6 +61,14 @@ public class Application {
         return new WebClientBuilderFactory(group, baseBuilder, "rpki-monitor %s".formatted(appConfig.getInfo().gitCommitId()));
     }
 
+    /**
+     * The actuator prometheus endpoint, served from the pre-rendered scrapes.
+     */
+    @Bean
+    public PrometheusScrapeEndpoint prometheusEndpoint(PrometheusRegistry prometheusRegistry, PrometheusConfig prometheusConfig, PrometheusScrapeCache prometheusScrapeCache) {
+        return new CachedPrometheusScrapeEndpoint(prometheusRegistry, prometheusConfig.prometheusProperties(), prometheusScrapeCache);
+    }
+
     /**
      * Return an observation customiser that only differs in that it omits the URL.
      * The hostname for the request is the clientName.
@@ -86,7 +104,12 @@ public class Application {
             @NonNull final PublishedObjectsSummaryService publishedObjectsSummary,
             @NonNull ObjectExpirationMetrics objectExpirationMetrics,
             @NonNull ExpiryMonitorHooks expiryMonitorHooks,
-            @NonNull CertificateAnalysisService certificateAnalysisService
+            @NonNull CertificateAnalysisService certificateAnalysisService,
+            @NonNull TrackerStorageMetrics trackerStorageMetrics,
+            @NonNull CoalescingHookDispatcher updateHookDispatcher,
+            @NonNull PrometheusScrapeCache prometheusScrapeCache,
+            @NonNull PropagationMetrics propagationMetrics,
+            @NonNull RepositoryChurnMetrics repositoryChurnMetrics
             ) {
         checkOverlappingRepositoryKeys(config);
         var repos = new ArrayList<Triple<String, String, RepositoryTracker.Type>>();
@@ -105,31 +128,57 @@ public class Application {
                          .collect(toSet())
         );
 
-        var state = RepositoriesState.init(repos, publishedObjectsSummary.maxThreshold());
+        var state = RepositoriesState.init(repos, publishedObjectsSummary.maxThreshold(), config.getProperties().getTrackerStorage());
 
-        state.addHook(tracker -> publishedObjectsSummary.updateSizes(Instant.now(), tracker));
-        state.addHook(tracker -> {
-            var now = Instant.now();
-            var others = state.otherTrackers(tracker);
-            others.forEach(other -> publishedObjectsSummary.updateAndGetPublishedObjectsDiff(now, tracker, other));
-        });
-        state.addHook(tracker -> {
+        state.dispatchHooksWith(updateHookDispatcher);
+        state.addHook("published-object-sizes", tracker -> publishedObjectsSummary.updateSizes(Instant.now(), tracker));
+        state.addHook("published-object-diffs", tracker -> publishedObjectsSummary.updatePublishedObjectsDiff(Instant.now(), tracker, state.otherTrackers(tracker)));
+        state.addHook("object-expiration", tracker -> {
             if (tracker.getType() == RepositoryTracker.Type.RRDP || tracker.getType() == RepositoryTracker.Type.RSYNC) {
                 var now = Instant.now();
                 objectExpirationMetrics.trackExpiration(tracker.getUrl(), now, tracker.view(now).entries());
             }
         });
-        state.addHook(expiryMonitorHooks::track);
-        state.addHook(tracker -> log.info(
-            "Updated {} repository {} at {}; it now has {} entries.",
-            tracker.getType(),
-            tracker.getTag(),
-            tracker.getUrl(),
-            tracker.view(Instant.now()).size()
-        ));
+        state.addHook("expiry-monitor", expiryMonitorHooks::track);
+        state.addHook("propagation", tracker -> {
+            if (tracker.getType() == RepositoryTracker.Type.RRDP || tracker.getType() == RepositoryTracker.Type.RSYNC) {
+                state.trackersOfType(RepositoryTracker.Type.CORE).forEach(core -> propagationMetrics.trackPropagation(core, tracker));
+            }
+        });
+        state.addHook("tracker-storage", tracker -> {
+            trackerStorageMetrics.trackStorageSize(tracker.key(), tracker.storageSize());
+            trackerStorageMetrics.trackInternTableSize(config.getProperties().getTrackerStorage(), state.internTableBytes());
+        });
+        state.addHook("repository-churn", repositoryChurnMetrics::trackChurn);
+        state.addHook("log", tracker -> {
+            var churn = tracker.lastReport().total();
+            log.info(
+                "Updated {} repository {} at {}; it now has {} entries ({} disposed). {} added, {} re-published, {} disposed, {} purged.",
+                tracker.getType(),
+                tracker.getTag(),
+                tracker.getUrl(),
+                tracker.counts().live(),
+                tracker.counts().disposed(),
+                churn.added(),
+                churn.republished(),
+                churn.disposed(),
+                churn.purged()
+            );
+        });
+        // Last, so the scrape has the metrics of the hooks above
+        state.addHook("prometheus-scrape", tracker -> prometheusScrapeCache.refreshIfOlderThan(PrometheusScrapeCache.MIN_REFRESH_INTERVAL));
         return state;
     }
 
+    /**
+     * Runs the update hooks off the collector threads. Hooks of a tracker that is
+     * updated again before they ran, only run once on the latest version.
+     */
+    @Bean
+    public CoalescingHookDispatcher updateHookDispatcher(AppConfig config, MeterRegistry registry) {
+        return new CoalescingHookDispatcher(config.getProperties().getHookThreads(), 1024, registry);
+    }
+
     /**
      * Tags need to be unique, both within, and between sources.
      */
@@ -48,6 +48,8 @@ public class CertificateAnalysisService {
 
     final AtomicLong totalCertificateCount = new AtomicLong();
 
+    final AtomicLong certificateHeapBytes = new AtomicLong();
+
     final Counter processedPassed;
     final Counter processingFailed;
 
@@ -74,6 +76,10 @@ public class CertificateAnalysisService {
         Gauge.builder("rpkimonitoring.certificate.analysis.certificate.count", totalCertificateCount::get)
                 .description("Total number of certificates analysed")
                 .register(meterRegistry);
+        Gauge.builder("rpkimonitoring.certificate.analysis.certificate.heap", certificateHeapBytes::get)
+                .description("Estimated size of the heap held by the certificates of the last analysis while it runs (not measured)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
 
         processedPassed = Counter.builder("rpkimonitoring.certificate.analysis.runs")
                 .description("Number of analysis runs by status")
@@ -146,6 +152,7 @@ public class CertificateAnalysisService {
                     .filter(entry -> !config.isFileInIgnoredOverlap(entry.uri()))
                     .toList();
             totalCertificateCount.set(resourceCertificates.size());
+            certificateHeapBytes.set(resourceCertificates.stream().mapToLong(CertificateEntry::estimatedHeapSize).sum());
             log.info("Expanded {} RPKI certificates", resourceCertificates.size());
 
             var res = certificateComparisonDuration.record(() -> compareCertificates(resourceCertificates));
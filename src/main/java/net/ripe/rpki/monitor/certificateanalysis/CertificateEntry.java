@@ -3,6 +3,7 @@ package net.ripe.rpki.monitor.certificateanalysis;
 import lombok.NonNull;
 import net.ripe.ipresource.ImmutableResourceSet;
 import net.ripe.rpki.commons.crypto.x509cert.X509ResourceCertificate;
+import net.ripe.rpki.monitor.util.HeapSize;
 
 import java.util.Objects;
 
@@ -14,9 +15,54 @@ import java.util.Objects;
  *
  * <emph>Prevents reflection based equals/hashcode in certificates</emph>. Still calls this via the resources.
  */
-record CertificateEntry(@NonNull String uri, X509ResourceCertificate certificate, @NonNull ImmutableResourceSet resources, @NonNull String reachabilityPath) {
+record CertificateEntry(@NonNull String uri, X509ResourceCertificate certificate, @NonNull ImmutableResourceSet resources, @NonNull String reachabilityPath, long estimatedHeapSize) {
+    /** Rough size of a resource (range) in a resource set: the bounds and their values. */
+    static final long RESOURCE_BYTES = 96;
+
+    /**
+     * An entry for the certificate with an encoding of <code>encodedLength</code>
+     * bytes, which is used to estimate its retained heap.
+     */
+    public CertificateEntry(String uri, @NonNull X509ResourceCertificate certificate, int encodedLength, String path) {
+        this(uri, certificate, ImmutableResourceSet.of(certificate.getResources()), encodedLength, path);
+    }
+
+    /**
+     * An entry for the certificate, of which the encoding is used to estimate
+     * its retained heap. Prefer passing the length of the bytes the certificate
+     * was parsed from: this copies the encoding once.
+     */
     public CertificateEntry(String uri, @NonNull X509ResourceCertificate certificate, String path) {
-        this(uri, certificate, ImmutableResourceSet.of(certificate.getResources()), path);
+        this(uri, certificate, encodedLength(certificate), path);
+    }
+
+    /**
+     * An entry of which the certificate (if any) is not counted in the estimated
+     * retained heap.
+     */
+    public CertificateEntry(String uri, X509ResourceCertificate certificate, ImmutableResourceSet resources, String path) {
+        this(uri, certificate, resources, 0, path);
+    }
+
+    private CertificateEntry(String uri, X509ResourceCertificate certificate, ImmutableResourceSet resources, int encodedLength, String path) {
+        this(uri, certificate, resources, path, estimateHeapSize(uri, resources, encodedLength, path));
+    }
+
+    private static int encodedLength(X509ResourceCertificate certificate) {
+        var encoded = certificate.getEncoded();
+        return encoded == null ? 0 : encoded.length;
+    }
+
+    /**
+     * Estimated retained heap of an entry. The parsed certificate is assumed to
+     * take about as much as its encoding.
+     */
+    private static long estimateHeapSize(String uri, ImmutableResourceSet resources, int encodedLength, String path) {
+        return HeapSize.object(4 * HeapSize.REFERENCE + Long.BYTES)
+                + HeapSize.string(uri)
+                + HeapSize.string(path)
+                + resources.stream().count() * RESOURCE_BYTES
+                + 2 * HeapSize.byteArray(encodedLength);
     }
 
     public static boolean areAncestors(CertificateEntry lhs, CertificateEntry rhs) {
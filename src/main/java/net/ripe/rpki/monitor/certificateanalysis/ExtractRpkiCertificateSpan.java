@@ -55,7 +55,7 @@ class ExtractRpkiCertificateSpan extends RecursiveTask<Stream<CertificateEntry>>
         var maybeCertificate = parseCertificate(cert.bytes());
 
         return maybeCertificate.map(certificate -> {
-            var thisEntry = new CertificateEntry(certificateUrl, certificate, path);
+            var thisEntry = new CertificateEntry(certificateUrl, certificate, cert.bytes().length, path);
 
             return Stream.concat(
                     Stream.of(thisEntry),
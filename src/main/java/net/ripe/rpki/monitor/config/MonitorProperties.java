@@ -1,9 +1,13 @@
 package net.ripe.rpki.monitor.config;
 
 import lombok.Data;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+
 @Data
 @Configuration
 @ConfigurationProperties("rpkimonitor")
@@ -12,4 +16,19 @@ public class MonitorProperties {
     private String internalApiKeyHeader;
 
     private boolean acceptAspaV1 = false;
+
+    /** Where repository trackers store their objects: on the java heap or off-heap */
+    private RepositoryTracker.Storage trackerStorage = RepositoryTracker.Storage.HEAP;
+
+    /** Threads that compute the differences with the other repositories after an update */
+    private int diffThreads = 4;
+
+    /** Threads that run the hooks after repository updates, off the collector threads */
+    private int hookThreads = 2;
+
+    /** Maximum number of meters of a single metric; further meters are not registered */
+    private int maxMetersPerName = 2500;
+
+    /** Thresholds to publish the difference gauges for, all thresholds when empty */
+    private List<Duration> diffMetricThresholds = List.of();
 }
@@ -11,6 +11,7 @@ import net.ripe.rpki.monitor.expiration.fetchers.RrdpFetcher;
 import net.ripe.rpki.monitor.expiration.fetchers.RsyncFetcher;
 import net.ripe.rpki.monitor.metrics.CollectorUpdateMetrics;
 import net.ripe.rpki.monitor.metrics.FetcherMetrics;
+import net.ripe.rpki.monitor.metrics.RrdpSerialTimeline;
 import net.ripe.rpki.monitor.repositories.RepositoriesState;
 import net.ripe.rpki.monitor.util.http.WebClientBuilderFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,6 +46,7 @@ public class Collectors {
                       RepositoriesState repositoriesState,
                       AppConfig config,
                       FetcherMetrics fetcherMetrics,
+                      RrdpSerialTimeline serialTimeline,
                       WebClientBuilderFactory webclientBuilder,
                       CertificateAnalysisService certificateAnalysisService,
                       @Value("${collector.threads}") int numThreads,
@@ -64,9 +66,9 @@ public class Collectors {
         this.rrdpCollectors = config.getRrdpConfig().getTargets().stream().map(
                 target -> {
                     if (primaryRrdp.compareAndSet(false, true)) {
-                        return makeCollector(new RrdpFetcher(target, fetcherMetrics, webclientBuilder), certificateAnalysisService::process);
+                        return makeCollector(new RrdpFetcher(target, fetcherMetrics, serialTimeline, webclientBuilder), certificateAnalysisService::process);
                     }
-                    return makeCollector(new RrdpFetcher(target, fetcherMetrics, webclientBuilder), o -> {});
+                    return makeCollector(new RrdpFetcher(target, fetcherMetrics, serialTimeline, webclientBuilder), o -> {});
                 }
         ).toList();
         this.rsyncCollectors = config.getRsyncConfig().getTargets().stream().map(
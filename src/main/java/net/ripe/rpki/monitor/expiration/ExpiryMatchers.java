@@ -0,0 +1,123 @@
+package net.ripe.rpki.monitor.expiration;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The regexes of the expiry matchers, compiled to classify a uri against all of
+ * them at once.
+ * <p>
+ * The literal prefix of each regex (up to its first meta character) is put in a
+ * trie. Walking the trie along a uri only leaves the matchers whose prefix the
+ * uri starts with, and only their regexes are evaluated. A regex without a
+ * literal prefix (e.g. one with an alternation) is evaluated for every uri.
+ * <p>
+ * The matchers of an object only depend on its uri, so they are cached by the
+ * interned object id. Ids are re-used for other objects, so a cached result is
+ * only used when the uri is the same.
+ */
+final class ExpiryMatchers {
+    private static final int[] NONE = new int[0];
+    private static final String META_CHARACTERS = ".[]()*+?{}^$\\|";
+
+    private final Pattern[] patterns;
+    private final Node root = new Node();
+
+    // Classification by interned object id; entries are only replaced, never updated.
+    private volatile Classified[] byId = new Classified[0];
+
+    private record Classified(String uri, int[] matchers) {}
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private int[] matchers = NONE;
+    }
+
+    ExpiryMatchers(List<String> regexes) {
+        patterns = new Pattern[regexes.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            var regex = regexes.get(i);
+            patterns[i] = Pattern.compile(regex);
+
+            var node = root;
+            for (char c : literalPrefix(regex).toCharArray()) {
+                node = node.children.computeIfAbsent(c, k -> new Node());
+            }
+            node.matchers = append(node.matchers, i);
+        }
+    }
+
+    /**
+     * The characters every match of the regex starts with.
+     */
+    static String literalPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        var prefix = new StringBuilder();
+        for (char c : regex.toCharArray()) {
+            if (META_CHARACTERS.indexOf(c) >= 0) {
+                // These quantifiers make the preceding character optional
+                if ((c == '*' || c == '?' || c == '{') && !prefix.isEmpty()) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Indexes of the matchers that match the uri of the object with the given id,
+     * in ascending order.
+     */
+    int[] matching(int id, String uri) {
+        var cache = byId;
+        var cached = id < cache.length ? cache[id] : null;
+        if (cached != null && cached.uri.equals(uri)) {
+            return cached.matchers;
+        }
+
+        var matchers = classify(uri);
+        store(id, new Classified(uri, matchers));
+        return matchers;
+    }
+
+    /**
+     * Indexes of the matchers that match the uri, in ascending order.
+     */
+    int[] classify(String uri) {
+        var res = NONE;
+        var node = root;
+        for (int i = 0; node != null; i++) {
+            for (int matcher : node.matchers) {
+                if (patterns[matcher].matcher(uri).matches()) {
+                    res = append(res, matcher);
+                }
+            }
+            node = i < uri.length() ? node.children.get(uri.charAt(i)) : null;
+        }
+        // Matchers are found by prefix length.
+        Arrays.sort(res);
+        return res;
+    }
+
+    private synchronized void store(int id, Classified classified) {
+        var cache = byId;
+        if (id >= cache.length) {
+            cache = Arrays.copyOf(cache, Math.max(id + 1, 2 * cache.length));
+        }
+        cache[id] = classified;
+        byId = cache;
+    }
+
+    private static int[] append(int[] xs, int x) {
+        var res = Arrays.copyOf(xs, xs.length + 1);
+        res[xs.length] = x;
+        return res;
+    }
+}
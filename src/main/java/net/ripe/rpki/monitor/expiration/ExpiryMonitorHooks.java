@@ -1,23 +1,25 @@
 package net.ripe.rpki.monitor.expiration;
 
-import com.google.common.base.Preconditions;
+import com.google.common.primitives.ImmutableLongArray;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.monitor.config.ExpiryMonitoringConfig;
-import net.ripe.rpki.monitor.repositories.RepositoryEntry;
 import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
+import java.time.Clock;
+import java.time.InstantSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 @Slf4j
 @Component
@@ -30,41 +32,93 @@ public class ExpiryMonitorHooks {
 
     private final ConcurrentHashMap<TrackedMonitor, MatcherMetrics> metrics = new ConcurrentHashMap<>();
 
+    private final List<ExpiryMonitoringConfig.Matcher> matchers;
+    private final ExpiryMatchers compiledMatchers;
+    private final InstantSource clock;
+
     @Autowired
     public ExpiryMonitorHooks(ExpiryMonitoringConfig expiryMonitoring, MeterRegistry meterRegistry) {
+        this(expiryMonitoring, meterRegistry, Clock.systemUTC());
+    }
+
+    ExpiryMonitorHooks(ExpiryMonitoringConfig expiryMonitoring, MeterRegistry meterRegistry, InstantSource clock) {
         this.expiryMonitoring = expiryMonitoring;
         this.meterRegistry = meterRegistry;
+        this.clock = clock;
+
+        this.matchers = Optional.ofNullable(expiryMonitoring.match()).orElse(List.of());
+        this.compiledMatchers = new ExpiryMatchers(matchers.stream().map(ExpiryMonitoringConfig.Matcher::regex).toList());
     }
 
     public void track(final RepositoryTracker tracker) {
         // Track specified tags if set, but default to all of them.
         if (expiryMonitoring.shouldTrack(tracker)) {
             log.info("track({}, {}, {})", tracker.getUrl(), tracker.getTag(), tracker.getType());
-            expiryMonitoring.match().stream().parallel().forEach(matcher -> {
-                var matcherMetrics = metrics.computeIfAbsent(new TrackedMonitor(tracker.getTag(), tracker.getUrl(), matcher), monitor -> new MatcherMetrics(monitor, meterRegistry));
 
-                matcherMetrics.trackObjects(tracker.view(Instant.now()).entries());
+            // Classify all objects against all matchers in one pass, and replace the expirations at the end.
+            var expirations = new ImmutableLongArray.Builder[matchers.size()];
+            Arrays.setAll(expirations, i -> ImmutableLongArray.builder());
+            var unknown = new int[matchers.size()];
+
+            tracker.view(clock.instant()).forEachEntryWithId((entry, id) -> {
+                for (int matcher : compiledMatchers.matching(id, entry.getUri())) {
+                    if (entry.expiration().isEmpty()) {
+                        unknown[matcher]++;
+                    } else {
+                        expirations[matcher].add(entry.expiration().get().getEpochSecond());
+                    }
+                }
             });
+
+            for (int i = 0; i < matchers.size(); i++) {
+                metrics.computeIfAbsent(new TrackedMonitor(tracker.getTag(), tracker.getUrl(), matchers.get(i)), monitor -> new MatcherMetrics(monitor, meterRegistry, clock))
+                        .set(expirations[i].build().toArray(), unknown[i]);
+            }
         }
     }
 
     private record TrackedMonitor(String key, String url, ExpiryMonitoringConfig.Matcher matcher) { }
 
-    private static class MatcherMetrics {
-        private final AtomicInteger aboveGauge = new AtomicInteger();
-        private final AtomicInteger belowGauge = new AtomicInteger();
-        private final AtomicInteger unknownGauge = new AtomicInteger();
-
-        private final long threshold;
+    /**
+     * Expirations (in unix time seconds, ascending) of the matched objects, and
+     * the number of matched objects without an expiration.
+     */
+    private record MatchedObjects(long[] expirations, int unknown) {
+        private static final MatchedObjects NONE = new MatchedObjects(new long[0], 0);
+
+        /**
+         * Number of objects expiring before unix time <i>t</i>.
+         */
+        int expiringBefore(long t) {
+            int low = 0;
+            int high = expirations.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (expirations[mid] < t) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
 
-        private final Predicate<String> regexMatch;
+    /**
+     * The gauges are evaluated against the expirations of the last update when
+     * they are read, so objects move from above to below the threshold as time
+     * passes, also when the repository is not updated.
+     */
+    private static class MatcherMetrics {
+        private final AtomicReference<MatchedObjects> objects = new AtomicReference<>(MatchedObjects.NONE);
 
-        MatcherMetrics(TrackedMonitor monitor, final MeterRegistry registry) {
-            threshold = monitor.matcher.threshold().toSeconds();
-            regexMatch = Pattern.compile(monitor.matcher.regex()).asMatchPredicate();
+        MatcherMetrics(TrackedMonitor monitor, final MeterRegistry registry, InstantSource clock) {
+            var threshold = monitor.matcher.threshold().toSeconds();
+            var objects = this.objects;
+            ToIntFunction<MatchedObjects> below = x -> x.expiringBefore(clock.instant().getEpochSecond() + threshold);
 
-            BiConsumer<AtomicInteger, String> buildGauge = (value, comparison) ->
-                Gauge.builder("rpkimonitoring.expiry.matcher", value::get)
+            BiConsumer<Supplier<Number>, String> buildGauge = (value, comparison) ->
+                Gauge.builder("rpkimonitoring.expiry.matcher", value)
                     .baseUnit("objects")
                     .description("Number of objects matching by regex, and comparison status (above=ok, below=error state, unknown=no expiration time)")
                     .tags(monitor.matcher.tags())
@@ -75,33 +129,17 @@ public class ExpiryMonitorHooks {
                     .tag("comparison", comparison)
                     .register(registry);
 
-            buildGauge.accept(aboveGauge, "above");
-            buildGauge.accept(belowGauge, "below");
-            buildGauge.accept(unknownGauge,"unknown");
-        }
-
-        private boolean testRepositoryEntry(RepositoryEntry subject) {
-            return regexMatch.test(subject.getUri());
+            buildGauge.accept(() -> {
+                var x = objects.get();
+                return x.expirations.length - below.applyAsInt(x);
+            }, "above");
+            buildGauge.accept(() -> below.applyAsInt(objects.get()), "below");
+            buildGauge.accept(() -> objects.get().unknown, "unknown");
         }
 
-        public void trackObjects(Stream<RepositoryEntry> entries) {
-            Preconditions.checkArgument(!entries.isParallel(), "regular expression is not thread safe.");
-            // Process all entries, and set the gauge to the new value at the end.
-            var above = new AtomicInteger();
-            var below = new AtomicInteger();
-            var unknown = new AtomicInteger();
-
-            var unixTimeSeconds = Instant.now().getEpochSecond();
-
-            entries.filter(this::testRepositoryEntry).forEach(entry -> entry.expiration().ifPresentOrElse(expiration -> {
-                var secondsLeft = expiration.getEpochSecond()-unixTimeSeconds;
-
-                (secondsLeft < threshold ? below : above).incrementAndGet();
-            }, unknownGauge::incrementAndGet));
-
-            aboveGauge.set(above.get());
-            belowGauge.set(below.get());
-            unknownGauge.set(unknown.get());
+        public void set(long[] expirations, int unknown) {
+            Arrays.sort(expirations);
+            objects.set(new MatchedObjects(expirations, unknown));
         }
     }
 }
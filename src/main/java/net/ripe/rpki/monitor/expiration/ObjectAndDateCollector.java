@@ -140,7 +140,9 @@ public class ObjectAndDateCollector {
             var objectUri = e.getKey();
             var object = e.getValue();
 
+            var parseStart = System.nanoTime();
             var statusAndObject = getDateFor(objectUri, object.bytes());
+            collectorUpdateMetrics.trackParse(RepositoryObjectType.parse(objectUri), statusAndObject.getLeft().name(), System.nanoTime() - parseStart, object.bytes().length);
             maxObjectSize.getAndAccumulate(object.bytes().length, Integer::max);
             if (ACCEPTED.equals(statusAndObject.getLeft())) {
                 passedObjects.incrementAndGet();
@@ -3,15 +3,18 @@ package net.ripe.rpki.monitor.expiration;
 import net.ripe.rpki.monitor.config.AppConfig;
 import net.ripe.rpki.monitor.repositories.RepositoriesState;
 import net.ripe.rpki.monitor.repositories.RepositoryEntry;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Set;
+import java.util.List;
 
 @RestController
 @RequestMapping("/about_to_expire")
@@ -26,19 +29,42 @@ public class ObjectsAboutToExpireController {
         this.appConfig = appConfig;
     }
 
+    /**
+     * Objects expiring within <code>in_hours</code>, in order of expiration. Use
+     * <code>offset</code> (at least 0) and <code>limit</code> (at least 1) to page
+     * through the objects.
+     */
     @GetMapping(value = "rrdp")
-    public Set<RepositoryEntry> rrdpSummary(@RequestParam(value = "in_hours", defaultValue = "2") int inHours) {
-        var now = Instant.now();
+    public List<RepositoryEntry> rrdpSummary(
+            @RequestParam(value = "in_hours", defaultValue = "2") int inHours,
+            @RequestParam(value = "offset", defaultValue = "0") long offset,
+            @RequestParam(value = "limit", defaultValue = "" + Long.MAX_VALUE) long limit
+    ) {
         var repository = repositories.getTrackerByTag(appConfig.getRrdpConfig().getTargets().get(0).getName())
                 .orElseThrow(() -> new IllegalStateException("No tracker for RRDP main repository"));
-        return repository.view(now).expiration(now.plus(Duration.ofHours(inHours)));
+        return aboutToExpire(repository, inHours, offset, limit);
     }
 
     @GetMapping(value = "rsync")
-    public Set<RepositoryEntry> rsyncSummary(@RequestParam(value = "in_hours", defaultValue = "2") int inHours) {
-        var now = Instant.now();
+    public List<RepositoryEntry> rsyncSummary(
+            @RequestParam(value = "in_hours", defaultValue = "2") int inHours,
+            @RequestParam(value = "offset", defaultValue = "0") long offset,
+            @RequestParam(value = "limit", defaultValue = "" + Long.MAX_VALUE) long limit
+    ) {
         var repository = repositories.getTrackerByTag("rsync")
                 .orElseThrow(() -> new IllegalStateException("No tracker for rsync main repository"));
-        return repository.view(now).expiration(now.plus(Duration.ofHours(inHours)));
+        return aboutToExpire(repository, inHours, offset, limit);
+    }
+
+    private List<RepositoryEntry> aboutToExpire(RepositoryTracker repository, int inHours, long offset, long limit) {
+        if (offset < 0 || limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "offset must be at least 0 and limit at least 1");
+        }
+        var now = Instant.now();
+        return repository.view(now)
+                .expiringBefore(now.plus(Duration.ofHours(inHours)))
+                .skip(offset)
+                .limit(limit)
+                .toList();
     }
 }
@@ -9,12 +9,10 @@ import net.ripe.rpki.monitor.HasHashAndUri;
 import java.time.Instant;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.function.Function;
 
 public record RepoObject(Instant creation, Instant expiration, @Getter String uri, byte[] sha256) implements Comparable<RepoObject>, HasHashAndUri {
-    private static final Comparator<RepoObject> COMPARE_REPO_OBJECT = Comparator.comparing(RepoObject::expiration)
-            .thenComparing(RepoObject::creation)
-            .thenComparing(RepoObject::uri)
-            .thenComparing(Comparator.comparing(RepoObject::sha256, UnsignedBytes.lexicographicalComparator()));
+    private static final Comparator<RepoObject> COMPARE_REPO_OBJECT = ordering(RepoObject::expiration, RepoObject::creation, RepoObject::uri, RepoObject::sha256);
 
     public RepoObject {
         Preconditions.checkArgument(sha256.length == 32, "sha256 hashes are 256b/8 bytes long");
@@ -24,6 +22,17 @@ public record RepoObject(Instant creation, Instant expiration, @Getter String ur
         return COMPARE_REPO_OBJECT.compare(this, o);
     }
 
+    /**
+     * The ordering of repo objects (by expiration, creation, uri and hash) for
+     * any other representation of an object.
+     */
+    public static <T> Comparator<T> ordering(Function<T, Instant> expiration, Function<T, Instant> creation, Function<T, String> uri, Function<T, byte[]> sha256) {
+        return Comparator.comparing(expiration)
+                .thenComparing(creation)
+                .thenComparing(uri)
+                .thenComparing(Comparator.comparing(sha256, UnsignedBytes.lexicographicalComparator()));
+    }
+
     public static RepoObject fictionalObjectValidAtInstant(final Instant then) {
         return new RepoObject(then, then, "NA", new byte[32]);
     }
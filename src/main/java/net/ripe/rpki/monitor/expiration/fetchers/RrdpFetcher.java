@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.monitor.config.RrdpConfig;
 import net.ripe.rpki.monitor.metrics.FetcherMetrics;
+import net.ripe.rpki.monitor.metrics.RrdpSerialTimeline;
 import net.ripe.rpki.monitor.publishing.dto.RpkiObject;
 import net.ripe.rpki.monitor.util.http.WebClientBuilderFactory;
 import org.springframework.http.HttpRequest;
@@ -24,6 +25,7 @@ public class RrdpFetcher implements RepoFetcher {
 
     private final WebClient httpClient;
     private final FetcherMetrics.RRDPFetcherMetrics metrics;
+    private final RrdpSerialTimeline serialTimeline;
     private final RrdpSnapshotClient rrdpSnapshotClient;
 
     private Optional<RrdpSnapshotClient.RrdpSnapshotState> lastUpdate = Optional.empty();
@@ -31,11 +33,13 @@ public class RrdpFetcher implements RepoFetcher {
     public RrdpFetcher(
             RrdpConfig.RrdpRepositoryConfig config,
             FetcherMetrics fetcherMetrics,
+            RrdpSerialTimeline serialTimeline,
             WebClientBuilderFactory webclientBuilderFactory) {
         this.config = config;
         this.httpClient = webclientBuilderFactory.connectToClientBuilder(config.getConnectTo()).build();
 
         this.metrics = fetcherMetrics.rrdp(config);
+        this.serialTimeline = serialTimeline;
         this.rrdpSnapshotClient = new RrdpSnapshotClient(new WebclientRrdpHttpStrategy(config));
 
         log.info("RrdpFetcher({}, {}, {}, {})", config.getName(), config.getNotificationUrl(), config.getOverrideHostname(), config.getConnectTo());
@@ -51,12 +55,17 @@ public class RrdpFetcher implements RepoFetcher {
         try {
             var update = rrdpSnapshotClient.fetchObjects(config.getNotificationUrl(), lastUpdate);
             metrics.success(update.serialAsLong(), update.collisionCount());
+            serialTimeline.observe(config, update);
 
             this.lastUpdate = Optional.of(update);
+            metrics.retainedState(update.estimatedHeapSize());
 
             return update.objects();
         } catch (SnapshotNotModifiedException e) {
-            lastUpdate.ifPresent(update -> metrics.success(update.serialAsLong(), update.collisionCount()));
+            lastUpdate.ifPresent(update -> {
+                metrics.success(update.serialAsLong(), update.collisionCount());
+                serialTimeline.observe(config, update);
+            });
             throw e;
         } catch (RRDPStructureException | FetcherException e) {
             metrics.failure();
@@ -6,6 +6,7 @@ import com.google.common.collect.ImmutableMap;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.monitor.publishing.dto.RpkiObject;
+import net.ripe.rpki.monitor.util.HeapSize;
 import net.ripe.rpki.monitor.util.Sha256;
 import net.ripe.rpki.monitor.util.XML;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -225,5 +226,20 @@ public class RrdpSnapshotClient {
             return serial.mod(BigInteger.valueOf(Long.MAX_VALUE)).longValueExact();
         }
 
+        /**
+         * Estimated retained heap of this state, which the fetcher holds until
+         * the next update: the objects with their uris, and the map.
+         */
+        public long estimatedHeapSize() {
+            // RegularImmutableMap: entries, hash table and an entry per object
+            long bytes = HeapSize.referenceArray(objects.size())
+                    + HeapSize.referenceArray(Long.highestOneBit(Math.max(1, objects.size()) * 2L))
+                    + objects.size() * HeapSize.object(2 * HeapSize.REFERENCE);
+            for (var object : objects.entrySet()) {
+                bytes += HeapSize.string(object.getKey()) + HeapSize.object(HeapSize.REFERENCE) + HeapSize.byteArray(object.getValue().bytes().length);
+            }
+            return bytes + HeapSize.string(snapshotUrl) + HeapSize.string(snapshotHash);
+        }
+
     }
 }
\ No newline at end of file
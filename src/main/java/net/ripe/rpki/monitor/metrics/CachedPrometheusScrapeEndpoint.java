@@ -0,0 +1,38 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusOutputFormat;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.lang.Nullable;
+
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The actuator prometheus endpoint, served from the {@link PrometheusScrapeCache}
+ * in the format negotiated by the actuator. Scrapes of some metrics
+ * (<code>includedNames</code>) are rendered on the request.
+ */
+@WebEndpoint(id = "prometheus")
+public class CachedPrometheusScrapeEndpoint extends PrometheusScrapeEndpoint {
+    private final PrometheusScrapeCache scrapeCache;
+
+    public CachedPrometheusScrapeEndpoint(PrometheusRegistry prometheusRegistry, Properties expositionFormatsProperties, PrometheusScrapeCache scrapeCache) {
+        super(prometheusRegistry, expositionFormatsProperties);
+        this.scrapeCache = scrapeCache;
+    }
+
+    @Override
+    @ReadOperation(producesFrom = PrometheusOutputFormat.class)
+    public WebEndpointResponse<byte[]> scrape(PrometheusOutputFormat format, @Nullable Set<String> includedNames) {
+        if (includedNames != null) {
+            return super.scrape(format, includedNames);
+        }
+        return scrapeCache.get(format.getProducedMimeType().toString())
+                .map(scrape -> new WebEndpointResponse<>(scrape.body(), format))
+                .orElseGet(() -> super.scrape(format, null));
+    }
+}
@@ -2,14 +2,20 @@ package net.ripe.rpki.monitor.metrics;
 
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
 import org.apache.commons.lang3.tuple.Triple;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 @AllArgsConstructor
@@ -27,11 +33,45 @@ public class CollectorUpdateMetrics {
     public static final String COLLECTOR_MAX_SIZE_DESCRIPTION = "Size of the biggest object retrieved by collector";
     public static final String STATUS = "status";
 
+    public static final String COLLECTOR_PARSE_DURATION_DESCRIPTION = "Time to parse an object in a collector, by object type and result";
+    public static final String COLLECTOR_PARSE_DURATION_METRIC = "rpkimonitoring.collector.parse.duration";
+    public static final String COLLECTOR_PARSE_SIZE_DESCRIPTION = "Size of the objects parsed by collectors, by object type and result";
+    public static final String COLLECTOR_PARSE_SIZE_METRIC = "rpkimonitoring.collector.parse.object.size";
+    public static final String TYPE = "type";
+
+    private static final Duration[] PARSE_DURATION_BUCKETS = {
+            Duration.ofNanos(100_000), Duration.ofNanos(250_000), Duration.ofNanos(500_000),
+            Duration.ofMillis(1), Duration.ofMillis(2), Duration.ofMillis(5), Duration.ofMillis(10),
+            Duration.ofMillis(50), Duration.ofMillis(250), Duration.ofSeconds(1)
+    };
+    private static final double[] PARSE_SIZE_BUCKETS = {
+            1 << 10, 2 << 10, 4 << 10, 16 << 10, 64 << 10, 256 << 10, 1 << 20, 4 << 20, 16 << 20
+    };
+
     @Autowired
     private final MeterRegistry registry;
 
     private final ConcurrentHashMap<Triple<String, String, String>, ExecutionStatus> executionStatus = new ConcurrentHashMap<>();
 
+    private final ConcurrentHashMap<RepositoryObjectType, ConcurrentHashMap<String, ParseMeters>> parseMeters = new ConcurrentHashMap<>();
+
+    /**
+     * Track the parse of an object. The meters are shared by all collectors:
+     * per repository the number of series of the histograms would get too
+     * large, while the objects have the same profile in every repository.
+     * <p>
+     * Recording is a couple of atomic increments, negligible compared to
+     * parsing an object, so every object is recorded.
+     *
+     * @param status name of the parse result, e.g. <code>ACCEPTED</code>
+     */
+    public void trackParse(RepositoryObjectType type, String status, long durationNanos, int size) {
+        var meters = parseMeters.computeIfAbsent(type, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(status, result -> new ParseMeters(type, result));
+        meters.duration.record(durationNanos, TimeUnit.NANOSECONDS);
+        meters.size.record(size);
+    }
+
     public ExecutionStatus trackSuccess(final String collectorName, final String tag, final String url) {
         final var status = getExecutionStatus(collectorName, tag, url);
 
@@ -60,6 +100,29 @@ public class CollectorUpdateMetrics {
         return executionStatus.computeIfAbsent(Triple.of(collectorName, tag, repoUrl), key -> new ExecutionStatus(collectorName, tag, repoUrl));
     }
 
+    private class ParseMeters {
+        private final Timer duration;
+        private final DistributionSummary size;
+
+        ParseMeters(RepositoryObjectType type, String status) {
+            var typeTag = type.name().toLowerCase(Locale.ROOT);
+            var statusTag = status.toLowerCase(Locale.ROOT);
+            duration = Timer.builder(COLLECTOR_PARSE_DURATION_METRIC)
+                    .description(COLLECTOR_PARSE_DURATION_DESCRIPTION)
+                    .tag(TYPE, typeTag)
+                    .tag(STATUS, statusTag)
+                    .serviceLevelObjectives(PARSE_DURATION_BUCKETS)
+                    .register(registry);
+            size = DistributionSummary.builder(COLLECTOR_PARSE_SIZE_METRIC)
+                    .description(COLLECTOR_PARSE_SIZE_DESCRIPTION)
+                    .baseUnit("bytes")
+                    .tag(TYPE, typeTag)
+                    .tag(STATUS, statusTag)
+                    .serviceLevelObjectives(PARSE_SIZE_BUCKETS)
+                    .register(registry);
+        }
+    }
+
     public class ExecutionStatus {
         private final String collectorName;
         private final String repoTag;
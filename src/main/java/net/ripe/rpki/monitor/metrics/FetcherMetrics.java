@@ -27,7 +27,7 @@ public class FetcherMetrics {
     }
 
     public RRDPFetcherMetrics rrdp(RrdpConfig.RrdpRepositoryConfig config) {
-        return rrdpMetrics.computeIfAbsent(config.metricUrlTag(), repoUrl -> new RRDPFetcherMetrics(repoUrl, registry));
+        return rrdpMetrics.computeIfAbsent(config.metricUrlTag(), repoUrl -> new RRDPFetcherMetrics(config.getName(), repoUrl, registry));
     }
 
     private static sealed class BaseFetcherMetrics {
@@ -68,7 +68,9 @@ public class FetcherMetrics {
 
         final AtomicInteger rrdpCollisions = new AtomicInteger();
 
-        private RRDPFetcherMetrics(final String url, MeterRegistry meterRegistry) {
+        final AtomicLong retainedStateBytes = new AtomicLong();
+
+        private RRDPFetcherMetrics(final String name, final String url, MeterRegistry meterRegistry) {
             super(url, meterRegistry);
 
             Gauge.builder("rpkimonitoring.fetcher.rrdp.serial", rrdpSerial::get)
@@ -79,6 +81,12 @@ public class FetcherMetrics {
                     .description("Number of objects with colliding URLs")
                     .tag("url", url)
                     .register(meterRegistry);
+            Gauge.builder("rpkimonitoring.fetcher.rrdp.state.heap", retainedStateBytes::get)
+                    .description("Estimated heap held by the last snapshot of the RRDP repository until the next update")
+                    .baseUnit("bytes")
+                    .tag("source", name)
+                    .tag("url", url)
+                    .register(meterRegistry);
         }
 
         /** RRDP variant only can track a succesful update if it also provides a serial. */
@@ -88,6 +96,10 @@ public class FetcherMetrics {
             this.rrdpCollisions.set(collisionCount);
         }
 
+        public void retainedState(long bytes) {
+            this.retainedStateBytes.set(bytes);
+        }
+
         public int collisionCount() {
             return rrdpCollisions.get();
         }
@@ -0,0 +1,115 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.config.MeterFilterReply;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.ripe.rpki.monitor.config.MonitorProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Limits the number of meters of this application.
+ * <p>
+ * Every metric name (family) of the application is capped at a number of
+ * meters. Meters beyond the cap are not registered, and are counted as denied.
+ * The difference gauges can be limited to some thresholds, since the gauges of
+ * all pairs, types and thresholds are the bulk of the meters.
+ * <p>
+ * Meters that are removed from the registry free their place under the cap.
+ */
+@Slf4j
+@Component
+public class MeterLifecycle implements MeterFilter, MeterBinder {
+    public static final String METERS_DESCRIPTION = "Number of meters in the registry";
+    public static final String METERS = "rpkimonitoring.meters";
+    public static final String METERS_DENIED_DESCRIPTION = "Number of meter registrations denied because their metric reached the maximum number of meters";
+    public static final String METERS_DENIED = "rpkimonitoring.meters.denied";
+
+    private static final String PREFIX = "rpkimonitoring.";
+
+    private final int maxMetersPerName;
+    // Threshold tags of the difference gauges to keep, all when empty.
+    private final Set<String> diffThresholds;
+
+    private final Map<String, Set<Meter.Id>> accepted = new ConcurrentHashMap<>();
+    private final Set<String> full = ConcurrentHashMap.newKeySet();
+    private final AtomicLong denied = new AtomicLong();
+
+    @Autowired
+    public MeterLifecycle(@NonNull MonitorProperties properties) {
+        this(properties.getMaxMetersPerName(), properties.getDiffMetricThresholds().stream().map(Duration::getSeconds).collect(Collectors.toSet()));
+    }
+
+    MeterLifecycle(int maxMetersPerName, Set<Long> diffThresholds) {
+        this.maxMetersPerName = maxMetersPerName;
+        this.diffThresholds = diffThresholds.stream().map(String::valueOf).collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public MeterFilterReply accept(Meter.Id id) {
+        if (!id.getName().startsWith(PREFIX) || id.getName().startsWith(METERS)) {
+            return MeterFilterReply.NEUTRAL;
+        }
+        if (id.getName().equals(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF) && !diffThresholds.isEmpty() && !diffThresholds.contains(id.getTag("threshold"))) {
+            return MeterFilterReply.DENY;
+        }
+
+        var ids = accepted.computeIfAbsent(id.getName(), name -> ConcurrentHashMap.newKeySet());
+        synchronized (ids) {
+            if (ids.contains(id)) {
+                return MeterFilterReply.NEUTRAL;
+            }
+            if (ids.size() >= maxMetersPerName) {
+                denied.incrementAndGet();
+                if (full.add(id.getName())) {
+                    log.warn("Metric {} reached the maximum of {} meters, further meters are not registered", id.getName(), maxMetersPerName);
+                }
+                return MeterFilterReply.DENY;
+            }
+            ids.add(id);
+        }
+        return MeterFilterReply.NEUTRAL;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        registry.config().onMeterRemoved(meter -> forget(meter.getId()));
+
+        Gauge.builder(METERS, registry, r -> r.getMeters().size())
+                .description(METERS_DESCRIPTION)
+                .register(registry);
+        FunctionCounter.builder(METERS_DENIED, denied, AtomicLong::get)
+                .description(METERS_DENIED_DESCRIPTION)
+                .register(registry);
+    }
+
+    /**
+     * Number of meters registered for the metric.
+     */
+    int meterCount(String name) {
+        var ids = accepted.get(name);
+        return ids == null ? 0 : ids.size();
+    }
+
+    private void forget(Meter.Id id) {
+        var ids = accepted.get(id.getName());
+        if (ids != null) {
+            synchronized (ids) {
+                ids.remove(id);
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package net.ripe.rpki.monitor.metrics;
 
-import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import net.ripe.rpki.monitor.repositories.RepositoryEntry;
@@ -9,19 +9,30 @@ import org.springframework.stereotype.Component;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
+/**
+ * Histograms of the time since creation and the time to expiration of the
+ * objects in a repository.
+ * <p>
+ * The histograms describe the latest state of a repository: they are computed
+ * from all objects on each update and exposed as one gauge per bucket, with the
+ * cumulative number of objects at or below the bucket bound in the
+ * <code>le</code> tag.
+ */
 @AllArgsConstructor
 @Component
 public class ObjectExpirationMetrics {
-    private static final String COLLECTOR_CREATION_DESCRIPTION = "Number of counted objects by collector by time since creation";
-    public static final String COLLECTOR_CREATION_METRIC = "rpkimonitoring.collector.creation";
+    private static final String COLLECTOR_CREATION_DESCRIPTION = "Number of objects by collector with a time since creation at most le seconds";
+    public static final String COLLECTOR_CREATION_METRIC = "rpkimonitoring.collector.creation.objects";
 
-    private static final String COLLECTOR_EXPIRATION_DESCRIPTION = "Number of counted objects by collector by time to expiration";
-    public static final String COLLECTOR_EXPIRATION_METRIC = "rpkimonitoring.collector.expiration";
+    private static final String COLLECTOR_EXPIRATION_DESCRIPTION = "Number of objects by collector with a time to expiration at most le seconds";
+    public static final String COLLECTOR_EXPIRATION_METRIC = "rpkimonitoring.collector.expiration.objects";
 
-    private static final double[] SERVICE_LEVEL_INDICATORS = new double[]{
+    private static final long[] SERVICE_LEVEL_INDICATORS = new long[]{
         Duration.ofMinutes(1).toSeconds(),
         Duration.ofMinutes(30).toSeconds(),
         Duration.ofHours(1).toSeconds(),
@@ -38,49 +49,64 @@ public class ObjectExpirationMetrics {
 
     private final MeterRegistry registry;
 
-    private final ConcurrentHashMap<String, RepositoryExpirationSummary> expirationSummaries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RepositoryExpirationHistograms> expirationHistograms = new ConcurrentHashMap<>();
 
     public void trackExpiration(String url, Instant t, Stream<RepositoryEntry> content) {
-        final var updateHistogram = getExpirationSummary(url);
+        // Bucket counts, the last bucket is +Inf
+        var creation = new long[SERVICE_LEVEL_INDICATORS.length + 1];
+        var expiration = new long[SERVICE_LEVEL_INDICATORS.length + 1];
 
-        content.parallel().forEach(obj -> updateHistogram.update(t, obj));
+        content.forEach(obj -> {
+            if (obj.expiration().isPresent()) {
+                expiration[bucket(t.until(obj.expiration().get(), ChronoUnit.SECONDS))]++;
+            }
+            if (obj.creation().isPresent()) {
+                creation[bucket(obj.creation().get().until(t, ChronoUnit.SECONDS))]++;
+            }
+        });
+        for (int i = 1; i < creation.length; i++) {
+            creation[i] += creation[i - 1];
+            expiration[i] += expiration[i - 1];
+        }
+
+        var histograms = getExpirationHistograms(url);
+        histograms.creation.set(creation);
+        histograms.expiration.set(expiration);
     }
 
-    private RepositoryExpirationSummary getExpirationSummary(final String repoUrl) {
-        return expirationSummaries.computeIfAbsent(repoUrl, key -> new RepositoryExpirationSummary(repoUrl));
+    /**
+     * The index of the first bucket with a bound of at least <i>seconds</i>.
+     * Objects that already expired count in the first bucket.
+     */
+    private static int bucket(long seconds) {
+        var i = Arrays.binarySearch(SERVICE_LEVEL_INDICATORS, seconds);
+        return i >= 0 ? i : -i - 1;
     }
 
-    private class RepositoryExpirationSummary {
-        private final DistributionSummary expirationHistogram;
-        private final DistributionSummary creationHistogram;
+    private RepositoryExpirationHistograms getExpirationHistograms(final String repoUrl) {
+        return expirationHistograms.computeIfAbsent(repoUrl, key -> new RepositoryExpirationHistograms(repoUrl));
+    }
 
-        public RepositoryExpirationSummary(String repoUrl) {
-            creationHistogram = DistributionSummary.builder(COLLECTOR_CREATION_METRIC)
-                    .description(COLLECTOR_CREATION_DESCRIPTION)
-                    .tag("url", repoUrl)
-                    .baseUnit("seconds")
-                    .distributionStatisticExpiry(Duration.ofMinutes(15))
-                    .minimumExpectedValue((double)Duration.ofMinutes(5).toSeconds())
-                    .maximumExpectedValue((double)Duration.ofDays(366).toSeconds())
-                    .serviceLevelObjectives(SERVICE_LEVEL_INDICATORS)
-                    .register(registry);
+    private class RepositoryExpirationHistograms {
+        private final AtomicReference<long[]> creation = new AtomicReference<>(new long[SERVICE_LEVEL_INDICATORS.length + 1]);
+        private final AtomicReference<long[]> expiration = new AtomicReference<>(new long[SERVICE_LEVEL_INDICATORS.length + 1]);
 
-            expirationHistogram = DistributionSummary.builder(COLLECTOR_EXPIRATION_METRIC)
-                    .description(COLLECTOR_EXPIRATION_DESCRIPTION)
-                    .tag("url", repoUrl)
-                    .baseUnit("seconds")
-                    .distributionStatisticExpiry(Duration.ofMinutes(15))
-                    .minimumExpectedValue((double)Duration.ofMinutes(5).toSeconds())
-                    .maximumExpectedValue((double)Duration.ofDays(366).toSeconds())
-                    .serviceLevelObjectives(SERVICE_LEVEL_INDICATORS)
-                    .register(registry);
+        public RepositoryExpirationHistograms(String repoUrl) {
+            for (int i = 0; i <= SERVICE_LEVEL_INDICATORS.length; i++) {
+                register(COLLECTOR_CREATION_METRIC, COLLECTOR_CREATION_DESCRIPTION, repoUrl, creation, i);
+                register(COLLECTOR_EXPIRATION_METRIC, COLLECTOR_EXPIRATION_DESCRIPTION, repoUrl, expiration, i);
+            }
         }
 
-        public void update(Instant now, RepositoryEntry object) {
-            object.expiration().ifPresent(expiration ->
-                    expirationHistogram.record(now.until(expiration, ChronoUnit.SECONDS)));
-            object.creation().ifPresent(creation ->
-                    creationHistogram.record(creation.until(now, ChronoUnit.SECONDS)));
+        private void register(String name, String description, String repoUrl, AtomicReference<long[]> counts, int bucket) {
+            var le = bucket < SERVICE_LEVEL_INDICATORS.length
+                    ? Double.toString(SERVICE_LEVEL_INDICATORS[bucket])
+                    : "+Inf";
+            Gauge.builder(name, () -> counts.get()[bucket])
+                    .description(description)
+                    .tag("url", repoUrl)
+                    .tag("le", le)
+                    .register(registry);
         }
     }
 }
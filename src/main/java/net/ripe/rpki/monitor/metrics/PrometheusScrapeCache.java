@@ -0,0 +1,131 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Prometheus scrape, rendered ahead of the scrapes for each content type
+ * (exposition format) that was requested.
+ * <p>
+ * Rendering walks the whole registry, which is too slow to do on every scrape
+ * by several Prometheus replicas. The render job renders the content types
+ * that were scraped before every <code>rpkimonitor.scrape-render-interval</code>,
+ * and scrapes are served from the rendered bytes: a scrape is up to that
+ * interval old. After a repository update the scrapes are rendered as well,
+ * at most once per {@link #MIN_REFRESH_INTERVAL}, so the metrics of the update
+ * are scraped without waiting for the job. A scrape only renders when there is
+ * no rendered scrape of its content type, or it is older than the max age
+ * (e.g. when the render job does not run).
+ */
+@Slf4j
+@Component
+public class PrometheusScrapeCache {
+    public static final String SCRAPE_RENDER_DURATION_DESCRIPTION = "Time to render the prometheus scrape";
+    public static final String SCRAPE_RENDER_DURATION = "rpkimonitoring.prometheus.scrape.render.duration";
+    public static final String SCRAPE_SIZE_DESCRIPTION = "Size of the rendered prometheus scrape by content type";
+    public static final String SCRAPE_SIZE = "rpkimonitoring.prometheus.scrape.size";
+
+    /** Maximum age of the rendered scrape served to a scrape */
+    static final Duration MAX_AGE = Duration.ofMinutes(1);
+    /** Minimum age of a rendered scrape to render it again after a repository update */
+    public static final Duration MIN_REFRESH_INTERVAL = Duration.ofSeconds(5);
+
+    public record Scrape(Instant renderedAt, byte[] body) {}
+
+    private final Optional<PrometheusMeterRegistry> prometheus;
+    private final MeterRegistry registry;
+    // By content type, including the parameters that select the format
+    private final Map<String, Scrape> scrapes = new ConcurrentHashMap<>();
+    private final Timer renderTimer;
+
+    @Autowired
+    public PrometheusScrapeCache(ObjectProvider<PrometheusMeterRegistry> prometheus, @NonNull MeterRegistry registry) {
+        this(Optional.ofNullable(prometheus.getIfAvailable()), registry);
+    }
+
+    PrometheusScrapeCache(Optional<PrometheusMeterRegistry> prometheus, MeterRegistry registry) {
+        this.prometheus = prometheus;
+        this.registry = registry;
+
+        renderTimer = Timer.builder(SCRAPE_RENDER_DURATION)
+                .description(SCRAPE_RENDER_DURATION_DESCRIPTION)
+                .register(registry);
+    }
+
+    /**
+     * The rendered scrape of the content type, rendered now when it is missing
+     * or older than the max age. Empty when there is no prometheus registry.
+     */
+    public Optional<Scrape> get(String contentType) {
+        return prometheus.map(prometheusRegistry -> {
+            var current = scrapes.get(contentType);
+            if (current == null || current.renderedAt().plus(MAX_AGE).isBefore(Instant.now())) {
+                return render(contentType);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Render the content types that were scraped before.
+     */
+    public void refresh() {
+        scrapes.keySet().forEach(this::render);
+    }
+
+    /**
+     * Render the content types that were scraped before, of which the rendered
+     * scrape is older than the given age. Updates of several repositories in a
+     * short time render once.
+     */
+    public synchronized void refreshIfOlderThan(Duration age) {
+        var renderedBefore = Instant.now().minus(age);
+        scrapes.forEach((contentType, scrape) -> {
+            if (scrape.renderedAt().isBefore(renderedBefore)) {
+                render(contentType);
+            }
+        });
+    }
+
+    /**
+     * Render the scrape of a content type. Concurrent renders wait for each
+     * other, the registry is only walked by one of them at a time.
+     */
+    public synchronized Scrape render(String contentType) {
+        return prometheus.map(prometheusRegistry -> renderTimer.record(() -> {
+            var renderedAt = Instant.now();
+            try {
+                var body = new ByteArrayOutputStream(Optional.ofNullable(scrapes.get(contentType)).map(x -> x.body().length + 4096).orElse(64 * 1024));
+                prometheusRegistry.scrape(body, contentType);
+
+                var res = new Scrape(renderedAt, body.toByteArray());
+                if (scrapes.put(contentType, res) == null) {
+                    Gauge.builder(SCRAPE_SIZE, () -> Optional.ofNullable(scrapes.get(contentType)).map(x -> x.body().length).orElse(0))
+                            .description(SCRAPE_SIZE_DESCRIPTION)
+                            .baseUnit("bytes")
+                            .tag("content-type", contentType.split(";", 2)[0].strip())
+                            .register(registry);
+                }
+                return res;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        })).orElse(null);
+    }
+}
@@ -0,0 +1,59 @@
+package net.ripe.rpki.monitor.metrics;
+
+import org.joda.time.DateTime;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.quartz.QuartzJobBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+
+/**
+ * Render the prometheus scrapes on an interval: scrapes are at most this
+ * interval old.
+ */
+@Component
+public class PrometheusScrapeRenderJob extends QuartzJobBean {
+    private final PrometheusScrapeCache scrapeCache;
+
+    @Autowired
+    public PrometheusScrapeRenderJob(PrometheusScrapeCache scrapeCache) {
+        this.scrapeCache = scrapeCache;
+    }
+
+    @Override
+    protected void executeInternal(JobExecutionContext context) {
+        scrapeCache.refresh();
+    }
+
+    @Bean("Prometheus_Scrape_Render_Job_Detail")
+    public JobDetail jobDetail() {
+        return JobBuilder.newJob().ofType(PrometheusScrapeRenderJob.class)
+            .storeDurably()
+            .withIdentity("Prometheus_Scrape_Render_Job_Detail")
+            .withDescription("Invoke Prometheus Scrape Render Job service...")
+            .build();
+    }
+
+    @Bean("Prometheus_Scrape_Render_Trigger")
+    public Trigger trigger(
+        @Qualifier("Prometheus_Scrape_Render_Job_Detail") JobDetail job,
+        @Value("${rpkimonitor.scrape-render-interval:15s}") Duration interval) {
+        return
+            TriggerBuilder.newTrigger().forJob(job)
+                .withIdentity("Prometheus_Scrape_Render_Trigger")
+                .withDescription("Prometheus Scrape Render trigger")
+                .withSchedule(simpleSchedule().repeatForever().withIntervalInSeconds((int) interval.toSeconds()))
+                .startAt(DateTime.now().plusSeconds(15).toDate())
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time for objects published by core to appear in a repository.
+ * <p>
+ * Only the objects first seen by the repository since the last time its
+ * propagation was tracked are inspected, so the cost is proportional to the
+ * changes rather than to the size of the repository. When the hooks of several
+ * updates are coalesced, the objects of all of them are measured. The delay of
+ * an object is the time between its publication in core (<code>updatedAt</code>,
+ * or when the core tracker first saw it) and the update of the repository that
+ * added it.
+ * <p>
+ * The objects of the first update of a repository are skipped: they are new to
+ * the tracker, not to the repository. Re-published objects keep the time they
+ * were first seen, so they are not measured again.
+ */
+@Component
+public class PropagationMetrics {
+    public static final String PROPAGATION_DELAY_DESCRIPTION = "Time between publication of an object in core and its appearance in the repository";
+    public static final String PROPAGATION_DELAY = "rpkimonitoring.propagation.delay";
+    public static final String PROPAGATION_UNMATCHED_DESCRIPTION = "Number of objects added to the repository that are not in core";
+    public static final String PROPAGATION_UNMATCHED = "rpkimonitoring.propagation.unmatched";
+
+    private final Map<PublishedObjectsSummaryService.RepositoryKey, Meters> meters = new ConcurrentHashMap<>();
+    // Objects first seen up to this time are measured, by pair of core and repository
+    private final Map<RepositoryPair, Instant> measuredUntil = new ConcurrentHashMap<>();
+
+    private record RepositoryPair(PublishedObjectsSummaryService.RepositoryKey core, PublishedObjectsSummaryService.RepositoryKey repository) {}
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public PropagationMetrics(@NonNull MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Measure the objects the repository added since the last call. The hooks of
+     * a repository never run concurrently.
+     */
+    public void trackPropagation(RepositoryTracker core, RepositoryTracker repository) {
+        if (repository.lastUpdate().version() == 0 || core.lastUpdate().version() == 0) {
+            return;
+        }
+
+        var pair = new RepositoryPair(core.key(), repository.key());
+        var since = measuredUntil.get(pair);
+        if (since == null) {
+            // The objects of the first update are first seen at the first update.
+            since = repository.firstSeenAfter(Instant.MIN).findFirst()
+                    .map(RepositoryTracker.TrackedObject::firstSeen)
+                    .orElse(repository.lastUpdate().t());
+        }
+
+        var repositoryMeters = meters.computeIfAbsent(repository.key(), Meters::new);
+        var until = since;
+        for (var added : repository.firstSeenAfter(since).toList()) {
+            core.trackedObject(added.key()).ifPresentOrElse(
+                    published -> {
+                        var publishedAt = published.entry().creation().orElse(published.firstSeen());
+                        repositoryMeters.delay.record(delay(publishedAt, added.firstSeen()));
+                    },
+                    repositoryMeters.unmatched::increment
+            );
+            until = added.firstSeen();
+        }
+        measuredUntil.put(pair, until);
+    }
+
+    /**
+     * The delay is zero for objects that appeared before core published them,
+     * e.g. due to clock skew.
+     */
+    private static Duration delay(Instant publishedAt, Instant seenAt) {
+        return publishedAt.isBefore(seenAt) ? Duration.between(publishedAt, seenAt) : Duration.ZERO;
+    }
+
+    private class Meters {
+        private final Timer delay;
+        private final Counter unmatched;
+
+        Meters(PublishedObjectsSummaryService.RepositoryKey key) {
+            delay = Timer.builder(PROPAGATION_DELAY)
+                    .description(PROPAGATION_DELAY_DESCRIPTION)
+                    .tag("source", key.tag())
+                    .tag("url", key.url())
+                    .publishPercentiles(0.5, 0.9, 0.99)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofSeconds(1))
+                    .maximumExpectedValue(Duration.ofHours(2))
+                    .distributionStatisticExpiry(Duration.ofMinutes(15))
+                    .register(registry);
+            unmatched = Counter.builder(PROPAGATION_UNMATCHED)
+                    .description(PROPAGATION_UNMATCHED_DESCRIPTION)
+                    .tag("source", key.tag())
+                    .tag("url", key.url())
+                    .register(registry);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package net.ripe.rpki.monitor.metrics;
 
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.NonNull;
 import net.ripe.rpki.commons.util.RepositoryObjectType;
 import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService;
@@ -9,15 +11,19 @@ import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Locale;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Service
 public class PublishedObjectMetrics {
     public static final String PUBLISHED_OBJECT_DIFF_DESCRIPTION = "Number of objects in <lhs> that are not in <rhs>";
     public static final String PUBLISHED_OBJECT_DIFF = "rpkimonitoring.published.objects.diff";
+    public static final String PUBLISHED_OBJECT_DIFF_DURATION_DESCRIPTION = "Time to calculate the difference of <lhs> with <rhs>";
+    public static final String PUBLISHED_OBJECT_DIFF_DURATION = "rpkimonitoring.published.objects.diff.duration";
+    public static final String PUBLISHED_OBJECT_DIFF_CACHE_DESCRIPTION = "Number of difference lookups for the API by result (hit or miss)";
+    public static final String PUBLISHED_OBJECT_DIFF_CACHE = "rpkimonitoring.published.objects.diff.cache";
     public static final String PUBLISHED_OBJECT_COUNT_DESCRIPTION = "Number of published objects";
     public static final String PUBLISHED_OBJECT_PER_TYPE_COUNT_DESCRIPTION = "Number of published objects of each type";
     public static final String PUBLISHED_OBJECT_COUNT = "rpkimonitoring.published.objects.count";
@@ -25,13 +31,35 @@ public class PublishedObjectMetrics {
 
     private final Map<PublishedObjectsSummaryService.RepositoryKey, AtomicLong> count = new ConcurrentHashMap<>();
     private final Map<PublishedObjectsSummaryService.RepositoryObjectTypeKey, AtomicLong> countByType = new ConcurrentHashMap<>();
-    private final Map<PublishedObjectsSummaryService.RepositoryDiffKey, AtomicLong> countDiff = new ConcurrentHashMap<>();
+    // The diff gauges read the sizes of their pair from a map that is replaced as a whole, so the sizes of a
+    // pair change together. Replacing the sizes of a pair does not copy the sizes of the other pairs.
+    private final Map<RepositoryPair, Map<PublishedObjectsSummaryService.RepositoryDiffKey, Long>> diffSizes = new ConcurrentHashMap<>();
+    private final Map<PublishedObjectsSummaryService.RepositoryDiffKey, Gauge> diffGauges = new ConcurrentHashMap<>();
+    private final Map<RepositoryPair, Timer> diffTimers = new ConcurrentHashMap<>();
+
+    private record RepositoryPair(PublishedObjectsSummaryService.RepositoryKey lhs, PublishedObjectsSummaryService.RepositoryKey rhs) {
+        static RepositoryPair of(PublishedObjectsSummaryService.RepositoryDiffKey diffKey) {
+            return new RepositoryPair(diffKey.lhs(), diffKey.rhs());
+        }
+    }
+
+    private final Counter diffCacheHits;
+    private final Counter diffCacheMisses;
 
     private final MeterRegistry registry;
 
     @Autowired
     public PublishedObjectMetrics(@NonNull MeterRegistry registry) {
         this.registry = registry;
+
+        diffCacheHits = Counter.builder(PUBLISHED_OBJECT_DIFF_CACHE)
+                .description(PUBLISHED_OBJECT_DIFF_CACHE_DESCRIPTION)
+                .tag("result", "hit")
+                .register(registry);
+        diffCacheMisses = Counter.builder(PUBLISHED_OBJECT_DIFF_CACHE)
+                .description(PUBLISHED_OBJECT_DIFF_CACHE_DESCRIPTION)
+                .tag("result", "miss")
+                .register(registry);
     }
 
     public void trackObjectCount(PublishedObjectsSummaryService.RepositoryKey key, RepositoryTracker.View view) {
@@ -63,20 +91,55 @@ public class PublishedObjectMetrics {
         }).set(size);
     }
 
-    public void trackDiffSize(PublishedObjectsSummaryService.RepositoryDiffKey diffKey, long size) {
-        countDiff.computeIfAbsent(diffKey, dk -> {
-            final var diffCount = new AtomicLong(0);
-            Gauge.builder(PUBLISHED_OBJECT_DIFF, diffCount::get)
-                    .description(PUBLISHED_OBJECT_DIFF_DESCRIPTION)
-                    .tag("lhs", diffKey.lhs().tag())
-                    .tag("lhs-src", diffKey.lhs().url())
-                    .tag("rhs", diffKey.rhs().tag())
-                    .tag("rhs-src", diffKey.rhs().url())
-                    .tag("threshold", String.valueOf(diffKey.threshold().getSeconds()))
-                    .tag("type", diffKey.type().name().toLowerCase(Locale.ROOT))
-                    .register(registry);
+    /**
+     * Update the diff sizes of each pair in one step. A gauge never reads sizes
+     * of a pair of which only some are updated.
+     * <p>
+     * The sizes replace all sizes of the pairs they are for: the gauges of keys
+     * of these pairs that are no longer present are removed.
+     */
+    public void trackDiffSizes(Map<PublishedObjectsSummaryService.RepositoryDiffKey, Long> sizes) {
+        sizes.entrySet().stream()
+                .collect(Collectors.groupingBy(entry -> RepositoryPair.of(entry.getKey()), Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue)))
+                .forEach(this::trackDiffSizes);
+    }
 
-            return diffCount;
-        }).set(size);
+    private void trackDiffSizes(RepositoryPair pair, Map<PublishedObjectsSummaryService.RepositoryDiffKey, Long> sizes) {
+        var previous = diffSizes.put(pair, sizes);
+        if (previous != null) {
+            previous.keySet().stream()
+                    .filter(diffKey -> !sizes.containsKey(diffKey))
+                    .forEach(diffKey -> Optional.ofNullable(diffGauges.remove(diffKey)).ifPresent(registry::remove));
+        }
+        sizes.keySet().forEach(diffKey -> diffGauges.computeIfAbsent(diffKey, k ->
+                Gauge.builder(PUBLISHED_OBJECT_DIFF, () -> diffSizes.getOrDefault(pair, Map.of()).getOrDefault(k, 0L))
+                        .description(PUBLISHED_OBJECT_DIFF_DESCRIPTION)
+                        .tag("lhs", k.lhs().tag())
+                        .tag("lhs-src", k.lhs().url())
+                        .tag("rhs", k.rhs().tag())
+                        .tag("rhs-src", k.rhs().url())
+                        .tag("threshold", String.valueOf(k.threshold().getSeconds()))
+                        .tag("type", k.type().name().toLowerCase(Locale.ROOT))
+                        .register(registry)
+        ));
+    }
+
+    public void trackDiffCacheLookup(boolean hit) {
+        (hit ? diffCacheHits : diffCacheMisses).increment();
+    }
+
+    /**
+     * Timer for computing the difference of a pair of repositories.
+     */
+    public Timer diffTimer(PublishedObjectsSummaryService.RepositoryKey lhs, PublishedObjectsSummaryService.RepositoryKey rhs) {
+        return diffTimers.computeIfAbsent(new RepositoryPair(lhs, rhs), pair ->
+                Timer.builder(PUBLISHED_OBJECT_DIFF_DURATION)
+                        .description(PUBLISHED_OBJECT_DIFF_DURATION_DESCRIPTION)
+                        .tag("lhs", pair.lhs().tag())
+                        .tag("lhs-src", pair.lhs().url())
+                        .tag("rhs", pair.rhs().tag())
+                        .tag("rhs-src", pair.rhs().url())
+                        .register(registry)
+        );
     }
 }
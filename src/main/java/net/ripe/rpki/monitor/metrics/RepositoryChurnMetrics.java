@@ -0,0 +1,57 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counters of the objects that changed in the updates of a repository, by
+ * object type and kind of change. The counters read the totals of the tracker,
+ * so they include the updates of which the hooks were coalesced.
+ */
+@Component
+public class RepositoryChurnMetrics {
+    public static final String REPOSITORY_CHURN_DESCRIPTION = "Number of objects that changed in updates of the repository, by type and change";
+    public static final String REPOSITORY_CHURN = "rpkimonitoring.repository.churn";
+
+    private final Set<PublishedObjectsSummaryService.RepositoryKey> tracked = ConcurrentHashMap.newKeySet();
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public RepositoryChurnMetrics(@NonNull MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void trackChurn(RepositoryTracker tracker) {
+        if (!tracked.add(tracker.key())) {
+            return;
+        }
+        for (var type : RepositoryObjectType.values()) {
+            register(tracker, type, "added", RepositoryTracker.Churn::added);
+            register(tracker, type, "republished", RepositoryTracker.Churn::republished);
+            register(tracker, type, "disposed", RepositoryTracker.Churn::disposed);
+            register(tracker, type, "purged", RepositoryTracker.Churn::purged);
+        }
+    }
+
+    private void register(RepositoryTracker tracker, RepositoryObjectType type, String change, ToLongFunction<RepositoryTracker.Churn> count) {
+        FunctionCounter.builder(REPOSITORY_CHURN, tracker, x -> count.applyAsLong(x.totalChurn().getOrDefault(type, RepositoryTracker.Churn.NONE)))
+                .description(REPOSITORY_CHURN_DESCRIPTION)
+                .tag("source", tracker.getTag())
+                .tag("url", tracker.getUrl())
+                .tag("type", type.name().toLowerCase(Locale.ROOT))
+                .tag("change", change)
+                .register(registry);
+    }
+}
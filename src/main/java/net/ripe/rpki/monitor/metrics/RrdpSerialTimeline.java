@@ -0,0 +1,189 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import net.ripe.rpki.monitor.config.AppConfig;
+import net.ripe.rpki.monitor.config.RrdpConfig;
+import net.ripe.rpki.monitor.expiration.fetchers.RrdpSnapshotClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timeline of the (session, serial) of the RRDP targets, and how far each
+ * target lags behind the reference target (the first configured RRDP target,
+ * usually <code>main</code>).
+ * <p>
+ * An observation is added when the session, serial or snapshot of a target
+ * changes; repeated fetches of the same state only move its
+ * <code>lastObservedAt</code>. Only the last {@value #MAX_OBSERVATIONS}
+ * observations of a target are retained.
+ * <p>
+ * The skew gauges are evaluated from the timelines, so a target that is stuck
+ * keeps falling behind without further fetches:
+ * <ul>
+ *     <li><code>rpkimonitoring.rrdp.serial.lag</code>: serial of the reference
+ *     minus the serial of the target.</li>
+ *     <li><code>rpkimonitoring.rrdp.seconds.behind</code>: time since the
+ *     reference first served a serial the target does not have yet. When that
+ *     serial is no longer in the timeline of the reference, the oldest retained
+ *     newer serial is used, which gives a lower bound.</li>
+ * </ul>
+ * Both gauges are NaN while the target and the reference are in different
+ * sessions, or when either has not been observed yet. Without RRDP targets
+ * (e.g. only rsync is monitored) there is no reference and no gauges.
+ */
+@Component
+public class RrdpSerialTimeline {
+    public static final int MAX_OBSERVATIONS = 256;
+
+    public static final String RRDP_SERIAL_LAG_DESCRIPTION = "Number of serials the RRDP repository is behind the reference repository";
+    public static final String RRDP_SERIAL_LAG = "rpkimonitoring.rrdp.serial.lag";
+    public static final String RRDP_SECONDS_BEHIND_DESCRIPTION = "Seconds since the reference repository served a serial the RRDP repository does not have";
+    public static final String RRDP_SECONDS_BEHIND = "rpkimonitoring.rrdp.seconds.behind";
+
+    public record Observation(UUID session, BigInteger serial, String snapshotHash, Instant observedAt, Instant lastObservedAt) {
+        boolean sameState(UUID session, BigInteger serial, String snapshotHash) {
+            return this.session.equals(session) && this.serial.equals(serial) && Objects.equals(this.snapshotHash, snapshotHash);
+        }
+    }
+
+    private final Map<String, Timeline> timelines = new ConcurrentHashMap<>();
+
+    private final Optional<String> reference;
+    private final MeterRegistry registry;
+    private final InstantSource clock;
+
+    @Autowired
+    public RrdpSerialTimeline(AppConfig config, @NonNull MeterRegistry registry) {
+        this(config.getRrdpConfig().getTargets().stream().findFirst().map(RrdpConfig.RrdpRepositoryConfig::getName), registry, InstantSource.system());
+    }
+
+    RrdpSerialTimeline(@NonNull Optional<String> reference, @NonNull MeterRegistry registry, @NonNull InstantSource clock) {
+        this.reference = reference;
+        this.registry = registry;
+        this.clock = clock;
+    }
+
+    /**
+     * Record the state of a target after a fetch, including fetches of which
+     * the notification file did not change.
+     */
+    public void observe(RrdpConfig.RrdpRepositoryConfig target, RrdpSnapshotClient.RrdpSnapshotState state) {
+        timelines.computeIfAbsent(target.getName(), name -> register(target))
+                .observe(state.sessionId(), state.serial(), state.snapshotHash(), clock.instant());
+    }
+
+    /** The retained observations of each target, oldest first. */
+    public Map<String, List<Observation>> timelines() {
+        var res = new TreeMap<String, List<Observation>>();
+        timelines.forEach((name, timeline) -> res.put(name, timeline.observations()));
+        return res;
+    }
+
+    public Optional<List<Observation>> timeline(String target) {
+        return Optional.ofNullable(timelines.get(target)).map(Timeline::observations);
+    }
+
+    private Timeline register(RrdpConfig.RrdpRepositoryConfig target) {
+        var timeline = new Timeline();
+        if (reference.isPresent() && !reference.get().equals(target.getName())) {
+            Gauge.builder(RRDP_SERIAL_LAG, timeline, this::serialLag)
+                    .description(RRDP_SERIAL_LAG_DESCRIPTION)
+                    .tag("source", target.getName())
+                    .tag("url", target.metricUrlTag())
+                    .register(registry);
+            Gauge.builder(RRDP_SECONDS_BEHIND, timeline, this::secondsBehind)
+                    .description(RRDP_SECONDS_BEHIND_DESCRIPTION)
+                    .tag("source", target.getName())
+                    .tag("url", target.metricUrlTag())
+                    .register(registry);
+        }
+        return timeline;
+    }
+
+    double serialLag(Timeline target) {
+        var referenceTimeline = reference.map(timelines::get).orElse(null);
+        var latest = target.latest();
+        var referenceLatest = referenceTimeline == null ? null : referenceTimeline.latest();
+        if (latest == null || referenceLatest == null || !latest.session().equals(referenceLatest.session())) {
+            return Double.NaN;
+        }
+        return referenceLatest.serial().subtract(latest.serial()).doubleValue();
+    }
+
+    double secondsBehind(Timeline target) {
+        var referenceTimeline = reference.map(timelines::get).orElse(null);
+        var latest = target.latest();
+        if (latest == null || referenceTimeline == null) {
+            return Double.NaN;
+        }
+        return referenceTimeline.firstNewer(latest.session(), latest.serial())
+                .map(since -> Math.max(0, Duration.between(since, clock.instant()).toMillis() / 1000.0))
+                .orElse(referenceTimeline.inSession(latest.session()) ? 0.0 : Double.NaN);
+    }
+
+    static class Timeline {
+        private final ArrayDeque<Observation> observations = new ArrayDeque<>();
+        private volatile Observation latest;
+
+        synchronized void observe(UUID session, BigInteger serial, String snapshotHash, Instant now) {
+            var last = observations.peekLast();
+            if (last != null && last.sameState(session, serial, snapshotHash)) {
+                observations.pollLast();
+                latest = new Observation(session, serial, snapshotHash, last.observedAt(), now);
+            } else {
+                if (observations.size() == MAX_OBSERVATIONS) {
+                    observations.pollFirst();
+                }
+                latest = new Observation(session, serial, snapshotHash, now, now);
+            }
+            observations.addLast(latest);
+        }
+
+        Observation latest() {
+            return latest;
+        }
+
+        synchronized List<Observation> observations() {
+            return List.copyOf(observations);
+        }
+
+        synchronized boolean inSession(UUID session) {
+            return latest != null && latest.session().equals(session);
+        }
+
+        /**
+         * When the first serial after the given one in the same session was
+         * observed. Empty when no newer serial was observed.
+         */
+        synchronized Optional<Instant> firstNewer(UUID session, BigInteger serial) {
+            if (!inSession(session)) {
+                return Optional.empty();
+            }
+            Instant since = null;
+            var it = observations.descendingIterator();
+            while (it.hasNext()) {
+                var observation = it.next();
+                if (!observation.session().equals(session) || observation.serial().compareTo(serial) <= 0) {
+                    break;
+                }
+                since = observation.observedAt();
+            }
+            return Optional.ofNullable(since);
+        }
+    }
+}
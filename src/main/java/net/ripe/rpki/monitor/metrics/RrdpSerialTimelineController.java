@@ -0,0 +1,34 @@
+package net.ripe.rpki.monitor.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+public class RrdpSerialTimelineController {
+    private final RrdpSerialTimeline timeline;
+
+    @Autowired
+    public RrdpSerialTimelineController(RrdpSerialTimeline timeline) {
+        this.timeline = timeline;
+    }
+
+    /**
+     * The (session, serial, snapshot hash) observed for each RRDP target, oldest
+     * first.
+     */
+    @GetMapping("/rrdp-timeline")
+    public Map<String, List<RrdpSerialTimeline.Observation>> timelines() {
+        return timeline.timelines();
+    }
+
+    @GetMapping("/rrdp-timeline/{target}")
+    public ResponseEntity<List<RrdpSerialTimeline.Observation>> timeline(@PathVariable("target") String target) {
+        return ResponseEntity.of(timeline.timeline(target));
+    }
+}
@@ -0,0 +1,80 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory used by the objects of each repository tracker and by the intern table
+ * they share. Off-heap storage reports the allocated native memory; heap
+ * storage reports an estimate of the retained heap.
+ */
+@Component
+public class TrackerStorageMetrics {
+    public static final String TRACKER_STORAGE_DESCRIPTION = "Memory used by the objects of a repository tracker, by storage area";
+    public static final String TRACKER_STORAGE = "rpkimonitoring.tracker.storage";
+    public static final String INTERN_TABLE_STORAGE_DESCRIPTION = "Memory used by the intern table shared by the repository trackers";
+    public static final String INTERN_TABLE_STORAGE = "rpkimonitoring.tracker.intern.table.storage";
+
+    private final Map<PublishedObjectsSummaryService.RepositoryKey, StorageGauges> storage = new ConcurrentHashMap<>();
+    private final Map<RepositoryTracker.Storage, AtomicLong> internTable = new ConcurrentHashMap<>();
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public TrackerStorageMetrics(@NonNull MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void trackStorageSize(PublishedObjectsSummaryService.RepositoryKey key, RepositoryTracker.StorageSize size) {
+        var gauges = storage.computeIfAbsent(key, k -> new StorageGauges(k, size.storage()));
+
+        gauges.records.set(size.recordBytes());
+        gauges.uris.set(size.uriBytes());
+        gauges.index.set(size.indexBytes());
+    }
+
+    public void trackInternTableSize(RepositoryTracker.Storage storage, long bytes) {
+        internTable.computeIfAbsent(storage, k -> {
+            var value = new AtomicLong();
+            Gauge.builder(INTERN_TABLE_STORAGE, value::get)
+                    .description(INTERN_TABLE_STORAGE_DESCRIPTION)
+                    .baseUnit("bytes")
+                    .tag("location", k == RepositoryTracker.Storage.OFF_HEAP ? "off-heap" : "heap")
+                    .register(registry);
+            return value;
+        }).set(bytes);
+    }
+
+    private class StorageGauges {
+        private final AtomicLong records = new AtomicLong();
+        private final AtomicLong uris = new AtomicLong();
+        private final AtomicLong index = new AtomicLong();
+
+        StorageGauges(PublishedObjectsSummaryService.RepositoryKey key, RepositoryTracker.Storage storage) {
+            var location = storage == RepositoryTracker.Storage.OFF_HEAP ? "off-heap" : "heap";
+            register(key, records, location, "records");
+            register(key, uris, location, "uris");
+            register(key, index, "heap", "index");
+        }
+
+        private void register(PublishedObjectsSummaryService.RepositoryKey key, AtomicLong value, String location, String area) {
+            Gauge.builder(TRACKER_STORAGE, value::get)
+                    .description(TRACKER_STORAGE_DESCRIPTION)
+                    .baseUnit("bytes")
+                    .tag("source", key.tag())
+                    .tag("url", key.url())
+                    .tag("location", location)
+                    .tag("area", area)
+                    .register(registry);
+        }
+    }
+}
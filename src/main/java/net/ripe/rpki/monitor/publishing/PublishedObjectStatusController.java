@@ -1,22 +1,31 @@
 package net.ripe.rpki.monitor.publishing;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 import lombok.AllArgsConstructor;
 import net.ripe.rpki.monitor.repositories.RepositoriesState;
 import net.ripe.rpki.monitor.repositories.RepositoryEntry;
 import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toSet;
 
@@ -25,6 +34,7 @@ import static java.util.stream.Collectors.toSet;
 public class PublishedObjectStatusController {
     private final PublishedObjectsSummaryService publishedObjectsSummaryService;
     private final RepositoriesState repositories;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/published-object-diffs")
     public Map<PublishedObjectsSummaryService.RepositoryDiffKey, Set<RepositoryEntry>> publishedObjectDiffs() {
@@ -32,6 +42,26 @@ public class PublishedObjectStatusController {
         return publishedObjectsSummaryService.updateAndGetPublishedObjectsDiff(now, repositories.allTrackers());
     }
 
+    /**
+     * Same as {@link #publishedObjectDiffs()} as newline delimited JSON: a line per
+     * difference with at most <code>limit_per_key</code> of its entries, up to
+     * <code>limit</code> entries per response. When there are more differences,
+     * the last line has the <code>cursor</code> to continue from.
+     * <p>
+     * A malformed cursor, a <code>limit</code> below 1 or a negative
+     * <code>limit_per_key</code> is a bad request.
+     */
+    @GetMapping(value = "/published-object-diffs.ndjson", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> publishedObjectDiffsStream(
+            @RequestParam(name = "cursor", defaultValue = "") String cursor,
+            @RequestParam(name = "limit", defaultValue = "" + Long.MAX_VALUE) long limit,
+            @RequestParam(name = "limit_per_key", defaultValue = "" + Long.MAX_VALUE) long limitPerKey
+    ) {
+        var now = Instant.now();
+        var trackers = repositories.allTrackers();
+        return streamDiffs(() -> publishedObjectsSummaryService.streamPublishedObjectsDiff(now, trackers), Cursor.parse(cursor), limit, limitPerKey);
+    }
+
     @GetMapping("/diff")
     public Set<RepositoryEntry> diff(
             @RequestParam("lhs") String lhs,
@@ -41,7 +71,18 @@ public class PublishedObjectStatusController {
         var lhsTracker = repositories.getTrackerByTag(lhs).orElseThrow(() -> new IllegalArgumentException("No such repository tracker: " + lhs));
         var rhsTracker = repositories.getTrackerByTag(rhs).orElseThrow(() -> new IllegalArgumentException("No such repository tracker: " + lhs));
 
-        return lhsTracker.difference(rhsTracker, Instant.now(), Duration.ofSeconds(threshold));
+        return publishedObjectsSummaryService.difference(lhsTracker, rhsTracker, Instant.now(), Duration.ofSeconds(threshold));
+    }
+
+    @GetMapping("/publication-point-diffs")
+    public List<RepositoryTracker.PublicationPointDifference> publicationPointDiffs(
+            @RequestParam("lhs") String lhs,
+            @RequestParam("rhs") String rhs
+    ) {
+        var lhsTracker = repositories.getTrackerByTag(lhs).orElseThrow(() -> new IllegalArgumentException("No such repository tracker: " + lhs));
+        var rhsTracker = repositories.getTrackerByTag(rhs).orElseThrow(() -> new IllegalArgumentException("No such repository tracker: " + rhs));
+
+        return lhsTracker.publicationPointDifferences(rhsTracker);
     }
 
     @GetMapping("/{repository}/info")
@@ -90,6 +131,18 @@ public class PublishedObjectStatusController {
         );
     }
 
+    @GetMapping(value = "/rsync-diffs.ndjson", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> rsyncDiffStream(
+            @RequestParam(name = "cursor", defaultValue = "") String cursor,
+            @RequestParam(name = "limit", defaultValue = "" + Long.MAX_VALUE) long limit,
+            @RequestParam(name = "limit_per_key", defaultValue = "" + Long.MAX_VALUE) long limitPerKey
+    ) {
+        var now = Instant.now();
+        var core = repositories.trackersOfType(RepositoryTracker.Type.CORE);
+        var rsync = repositories.trackersOfType(RepositoryTracker.Type.RSYNC);
+        return streamDiffs(() -> publishedObjectsSummaryService.streamDiff(now, core, rsync), Cursor.parse(cursor), limit, limitPerKey);
+    }
+
     @GetMapping("/rrdp-diffs")
     public Map<PublishedObjectsSummaryService.RepositoryDiffKey, Set<RepositoryEntry>> rrdpDiff() {
         return publishedObjectsSummaryService.getDiff(
@@ -98,4 +151,101 @@ public class PublishedObjectStatusController {
                 repositories.trackersOfType(RepositoryTracker.Type.RRDP)
         );
     }
+
+    @GetMapping(value = "/rrdp-diffs.ndjson", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> rrdpDiffStream(
+            @RequestParam(name = "cursor", defaultValue = "") String cursor,
+            @RequestParam(name = "limit", defaultValue = "" + Long.MAX_VALUE) long limit,
+            @RequestParam(name = "limit_per_key", defaultValue = "" + Long.MAX_VALUE) long limitPerKey
+    ) {
+        var now = Instant.now();
+        var core = repositories.trackersOfType(RepositoryTracker.Type.CORE);
+        var rrdp = repositories.trackersOfType(RepositoryTracker.Type.RRDP);
+        return streamDiffs(() -> publishedObjectsSummaryService.streamDiff(now, core, rrdp), Cursor.parse(cursor), limit, limitPerKey);
+    }
+
+    /**
+     * Position in a stream of differences: the index of the difference and of the
+     * entry in it. Pages are consistent as long as the repositories are not updated.
+     */
+    record Cursor(long key, long offset) {
+        static Cursor parse(String cursor) {
+            if (cursor.isEmpty()) {
+                return new Cursor(0, 0);
+            }
+            var parts = cursor.split("\\.", -1);
+            try {
+                Preconditions.checkArgument(parts.length == 2);
+                var res = new Cursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                Preconditions.checkArgument(res.key >= 0 && res.offset >= 0);
+                return res;
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key + "." + offset;
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamDiffs(
+            Supplier<Stream<PublishedObjectsSummaryService.RepositoryDiffEntries>> diffs, Cursor start, long limit, long limitPerKey
+    ) {
+        if (limit < 1 || limitPerKey < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1 and limit_per_key at least 0");
+        }
+        var entryWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (var generator = objectMapper.getFactory().createGenerator(out); var stream = diffs.get()) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+
+                var remaining = limit;
+                var it = stream.skip(start.key()).iterator();
+                for (var key = start.key(); it.hasNext(); key++) {
+                    var diff = it.next();
+                    var offset = key == start.key() ? start.offset() : 0;
+                    var end = Math.min(diff.total(), limitPerKey);
+                    // Once the limit is reached, the rest (also empty differences) is on the next page.
+                    if (remaining == 0) {
+                        writeCursor(generator, new Cursor(key, offset));
+                        break;
+                    }
+                    var count = Math.max(0, Math.min(end - offset, remaining));
+
+                    generator.writeStartObject();
+                    generator.writeStringField("lhs", diff.key().lhs().tag());
+                    generator.writeStringField("lhs-src", diff.key().lhs().url());
+                    generator.writeStringField("rhs", diff.key().rhs().tag());
+                    generator.writeStringField("rhs-src", diff.key().rhs().url());
+                    generator.writeStringField("type", diff.key().type().name().toLowerCase(Locale.ROOT));
+                    generator.writeNumberField("threshold", diff.key().threshold().getSeconds());
+                    generator.writeNumberField("total", diff.total());
+                    generator.writeNumberField("offset", offset);
+                    generator.writeArrayFieldStart("entries");
+                    for (var entries = diff.entries().skip(offset).limit(count).iterator(); entries.hasNext(); ) {
+                        entryWriter.writeValue(generator, entries.next());
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    remaining -= count;
+                    if (offset + count < end) {
+                        writeCursor(generator, new Cursor(key, offset + count));
+                        break;
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private static void writeCursor(JsonGenerator generator, Cursor cursor) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("cursor", cursor.toString());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
 }
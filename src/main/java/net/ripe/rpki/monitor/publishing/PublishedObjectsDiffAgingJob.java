@@ -0,0 +1,63 @@
+package net.ripe.rpki.monitor.publishing;
+
+import net.ripe.rpki.monitor.repositories.RepositoriesState;
+import org.joda.time.DateTime;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.quartz.QuartzJobBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.quartz.SimpleScheduleBuilder.simpleSchedule;
+
+/**
+ * Age the published object difference counters: objects that are missing move
+ * to larger thresholds over time, also when none of the repositories is updated.
+ */
+@Component
+public class PublishedObjectsDiffAgingJob extends QuartzJobBean {
+    private final PublishedObjectsSummaryService publishedObjectsSummary;
+    private final RepositoriesState repositories;
+
+    @Autowired
+    public PublishedObjectsDiffAgingJob(PublishedObjectsSummaryService publishedObjectsSummary, RepositoriesState repositories) {
+        this.publishedObjectsSummary = publishedObjectsSummary;
+        this.repositories = repositories;
+    }
+
+    @Override
+    protected void executeInternal(JobExecutionContext context) {
+        publishedObjectsSummary.refreshPublishedObjectsDiffCounters(Instant.now(), repositories.allTrackers());
+    }
+
+    @Bean("Published_Objects_Diff_Aging_Job_Detail")
+    public JobDetail jobDetail() {
+        return JobBuilder.newJob().ofType(PublishedObjectsDiffAgingJob.class)
+            .storeDurably()
+            .withIdentity("Published_Objects_Diff_Aging_Job_Detail")
+            .withDescription("Invoke Published Objects Diff Aging Job service...")
+            .build();
+    }
+
+    @Bean("Published_Objects_Diff_Aging_Trigger")
+    public Trigger trigger(
+        @Qualifier("Published_Objects_Diff_Aging_Job_Detail") JobDetail job,
+        @Value("${rpkimonitor.diff-aging-interval:30s}") Duration interval) {
+        return
+            TriggerBuilder.newTrigger().forJob(job)
+                .withIdentity("Published_Objects_Diff_Aging_Trigger")
+                .withDescription("Published Objects Diff Aging trigger")
+                .withSchedule(simpleSchedule().repeatForever().withIntervalInSeconds((int) interval.toSeconds()))
+                .startAt(DateTime.now().plusMinutes(1).toDate())
+                .build();
+    }
+}
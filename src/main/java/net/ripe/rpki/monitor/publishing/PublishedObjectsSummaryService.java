@@ -1,27 +1,32 @@
 package net.ripe.rpki.monitor.publishing;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Verify;
 import com.google.common.collect.Sets;
-import lombok.AllArgsConstructor;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.annotation.PreDestroy;
 import lombok.experimental.Delegate;
 import lombok.extern.slf4j.Slf4j;
 import net.ripe.rpki.commons.util.RepositoryObjectType;
+import net.ripe.rpki.monitor.config.AppConfig;
 import net.ripe.rpki.monitor.metrics.PublishedObjectMetrics;
+import net.ripe.rpki.monitor.repositories.PairDifference;
 import net.ripe.rpki.monitor.repositories.RepositoryEntry;
 import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import net.ripe.rpki.monitor.repositories.TrackerDifference;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 
-@AllArgsConstructor
 @Service
 @Slf4j
 public class PublishedObjectsSummaryService {
@@ -34,32 +39,86 @@ public class PublishedObjectsSummaryService {
             Duration.of(3411, SECONDS)
     );
 
-    @Autowired
+    // Upper bound on the cached differences, the thresholds of /diff come from the request
+    private static final int MAX_CACHED_DIFFERENCES = 1024;
+
     private final PublishedObjectMetrics publishedObjectMetrics;
+    // Computes the differences of an updated repository with the other repositories
+    private final Executor diffExecutor;
+    // Differences with entries for the API, by ordered pair of repositories and thresholds
+    private final Map<DiffCacheKey, TrackerDifference> diffCache = new ConcurrentHashMap<>();
+    // Differences that only count, for the totals of the streamed differences
+    private final Map<DiffCacheKey, TrackerDifference> countCache = new ConcurrentHashMap<>();
+    // Live differences behind the difference gauges, maintained from the updates, by ordered pair of repositories
+    private final Map<DiffCacheKey, PairDifference> pairDifferences = new ConcurrentHashMap<>();
+    // The counts behind the difference gauges, by ordered pair of repositories
+    private final Map<DiffCacheKey, TrackerDifference> diffCounts = new ConcurrentHashMap<>();
+
+    private record DiffCacheKey(RepositoryKey lhs, RepositoryKey rhs, List<Duration> thresholds) {}
     public record RepositoryKey(String tag, String url){}
     public record RepositoryObjectTypeKey(@Delegate RepositoryKey key, RepositoryObjectType type) {}
     public record RepositoryDiffKey (RepositoryKey lhs, RepositoryKey rhs, RepositoryObjectType type, Duration threshold) {}
     public record RepositoryDiff (RepositoryDiffKey key, Set<RepositoryEntry> entries) {}
+    /** The (single use) stream of entries of a difference and their total number. */
+    public record RepositoryDiffEntries (RepositoryDiffKey key, long total, Stream<RepositoryEntry> entries) {}
+
+    /**
+     * The differences after an update are computed on a bounded pool. When all
+     * threads are busy and the queue is full, the updating thread computes the
+     * difference itself.
+     */
+    @Autowired
+    public PublishedObjectsSummaryService(PublishedObjectMetrics publishedObjectMetrics, AppConfig config) {
+        this(publishedObjectMetrics, newDiffExecutor(config.getProperties().getDiffThreads()));
+    }
+
+    /**
+     * Compute the differences on the calling thread.
+     */
+    PublishedObjectsSummaryService(PublishedObjectMetrics publishedObjectMetrics) {
+        this(publishedObjectMetrics, MoreExecutors.directExecutor());
+    }
+
+    private PublishedObjectsSummaryService(PublishedObjectMetrics publishedObjectMetrics, Executor diffExecutor) {
+        this.publishedObjectMetrics = publishedObjectMetrics;
+        this.diffExecutor = diffExecutor;
+    }
+
+    private static ExecutorService newDiffExecutor(int threads) {
+        Preconditions.checkArgument(threads > 0, "rpkimonitor.diff-threads must be positive, got %s", threads);
+        return new ThreadPoolExecutor(
+                threads, threads,
+                0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(16 * threads),
+                new ThreadFactoryBuilder().setNameFormat("published-objects-diff-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (diffExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
 
     /**
      * Update the repository size counters per object type.
      */
     public void updateSizes(Instant now, RepositoryTracker repository) {
         var key = repository.key();
-        publishedObjectMetrics.trackObjectCount(key, repository.view(now));
+        var view = repository.view(now);
+        publishedObjectMetrics.trackObjectCount(key, view);
 
-        repository
-            .view(now)
-            .stream()
-            .collect(Collectors.groupingBy(o -> o.getObjectType()))
-            .forEach((objectType, value) -> {
-                publishedObjectMetrics.trackObjectTypeCount(key, objectType, value.size());
-            });
+        view.sizeByType().forEach((objectType, size) -> {
+            publishedObjectMetrics.trackObjectTypeCount(key, objectType, size);
+        });
     }
 
     /**
      * Diff all repositories on the left-hand side with those on the right-hand
-     * side and update the difference counters.
+     * side at the smallest threshold. This leaves the difference counters alone:
+     * they are published for all thresholds.
      */
     public Map<RepositoryDiffKey, Set<RepositoryEntry>> getDiff(Instant t, List<RepositoryTracker> lhss, List<RepositoryTracker> rhss) {
         var threshold = THRESHOLDS.stream().min(Duration::compareTo)
@@ -69,13 +128,12 @@ public class PublishedObjectsSummaryService {
         Sets.cartesianProduct(Set.copyOf(lhss), Set.copyOf(rhss)).stream().forEach((repoPair) -> {
             Verify.verify(repoPair.size() == 2, "invariant violated: not a tuple"); // invariant
             var lhs = repoPair.get(0); var rhs = repoPair.get(1);
-            var lhsKey = lhs.key(); var rhsKey = rhs.key();
 
-            for (var objectType: RepositoryObjectType.values()) {
-                // lhs -> rhs, rhs -> lhs
-                diffs.put(new RepositoryDiffKey(lhsKey, rhsKey, objectType, threshold), collectPublishedObjectDifferenceAndUpdateCounters(lhs, rhs, t, threshold, objectType).entries);
-                diffs.put(new RepositoryDiffKey(rhsKey, lhsKey, objectType, threshold), collectPublishedObjectDifferenceAndUpdateCounters(rhs, lhs, t, threshold, objectType).entries);
-            }
+            // lhs -> rhs, rhs -> lhs
+            Stream.concat(
+                    collectPublishedObjectDifferences(lhs, rhs, t, List.of(threshold), false),
+                    collectPublishedObjectDifferences(rhs, lhs, t, List.of(threshold), false)
+            ).forEach(diff -> diffs.put(diff.key(), diff.entries()));
         });
         return diffs;
     }
@@ -93,6 +151,36 @@ public class PublishedObjectsSummaryService {
         }).collect(Collectors.toMap(RepositoryDiff::key, RepositoryDiff::entries));
     }
 
+    /**
+     * Same as {@link #getDiff(Instant, List, List)}, but streams the entries of
+     * the differences instead of collecting them. The order is stable: by the
+     * tags of the repositories, threshold and object type.
+     */
+    public Stream<RepositoryDiffEntries> streamDiff(Instant t, List<RepositoryTracker> lhss, List<RepositoryTracker> rhss) {
+        var threshold = THRESHOLDS.stream().min(Duration::compareTo)
+                .orElseThrow(() -> new IllegalStateException("PublishedObjectsSummaryService.THRESHOLDS is empty"));
+
+        return sortedByTag(lhss).flatMap(lhs -> sortedByTag(rhss).flatMap(rhs -> Stream.concat(
+                streamDifferences(lhs, rhs, t, List.of(threshold), false),
+                streamDifferences(rhs, lhs, t, List.of(threshold), false)
+        )));
+    }
+
+    /**
+     * Same as {@link #updateAndGetPublishedObjectsDiff(Instant, List)}, but streams
+     * the entries of the differences instead of collecting them. The order is
+     * stable: by the tags of the repositories, threshold and object type.
+     */
+    public Stream<RepositoryDiffEntries> streamPublishedObjectsDiff(Instant now, List<RepositoryTracker> repositories) {
+        return sortedByTag(repositories).flatMap(lhs -> sortedByTag(repositories)
+                .filter(rhs -> rhs != lhs)
+                .flatMap(rhs -> streamDifferences(lhs, rhs, now, THRESHOLDS, true)));
+    }
+
+    private static Stream<RepositoryTracker> sortedByTag(List<RepositoryTracker> repositories) {
+        return repositories.stream().sorted(Comparator.comparing(RepositoryTracker::getTag));
+    }
+
     /**
      * Process an update of repository (<code>lhs</code>).
      *
@@ -102,18 +190,104 @@ public class PublishedObjectsSummaryService {
      * <emph>Calculates the difference in both directions</emph>
      */
     public Stream<RepositoryDiff> updateAndGetPublishedObjectsDiff(Instant now, RepositoryTracker lhs, RepositoryTracker rhs) {
-        var res = Stream.<RepositoryDiff>builder();
-
-        for (var threshold : THRESHOLDS) {
-            for (var objectType: RepositoryObjectType.values()) {
+        return Stream.concat(
                 // lhs -> rhs
-                res.add(collectPublishedObjectDifferenceAndUpdateCounters(lhs, rhs, now, threshold, objectType));
+                collectPublishedObjectDifferences(lhs, rhs, now, THRESHOLDS, true),
                 // rhs -> lhs
-                res.add(collectPublishedObjectDifferenceAndUpdateCounters(rhs, lhs, now, threshold, objectType));
+                collectPublishedObjectDifferences(rhs, lhs, now, THRESHOLDS, true)
+        );
+    }
+
+    /**
+     * Process an update of repository (<code>updated</code>): update the
+     * difference counters against the other repositories, in both directions.
+     * <p>
+     * The pairs are computed in parallel, and all of them are done when this
+     * returns, so before the next update of the same repository.
+     */
+    public void updatePublishedObjectsDiff(Instant now, RepositoryTracker updated, List<RepositoryTracker> others) {
+        evictDifferences(updated.key());
+
+        var pairs = others.stream()
+                .flatMap(other -> Stream.of(
+                        CompletableFuture.runAsync(() -> updateDiffCounters(now, updated, other), diffExecutor),
+                        CompletableFuture.runAsync(() -> updateDiffCounters(now, other, updated), diffExecutor)
+                ))
+                .toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(pairs).join();
+    }
+
+    /**
+     * Update the difference counters between all repositories at different
+     * URLs. Objects move to larger thresholds as time passes, without any update
+     * of the repositories.
+     * <p>
+     * Only the pairs whose counts changed are counted again: one of the
+     * repositories was updated since, or a missing object reached the next
+     * threshold. Counting a pair applies the changes of the updates since it
+     * was counted before, and bins the missing objects by the time since when
+     * they are missing, so it does not depend on the number of objects.
+     */
+    public void refreshPublishedObjectsDiffCounters(Instant now, List<RepositoryTracker> repositories) {
+        for (var lhs : repositories) {
+            for (var rhs : repositories) {
+                if (!lhs.getUrl().equals(rhs.getUrl())) {
+                    var counted = diffCounts.get(diffCountsKey(lhs, rhs));
+                    if (counted == null || !counted.isCurrent(lhs, rhs, now)) {
+                        updateDiffCounters(now, lhs, rhs);
+                    }
+                }
             }
         }
+    }
 
-        return res.build();
+    /**
+     * The objects in <code>lhs</code> that are missing from <code>rhs</code> for
+     * longer than the threshold.
+     */
+    public Set<RepositoryEntry> difference(RepositoryTracker lhs, RepositoryTracker rhs, Instant now, Duration threshold) {
+        return cachedDifferences(lhs, rhs, now, List.of(threshold)).entries(threshold);
+    }
+
+    /**
+     * The difference with entries, from the cache when it is still current:
+     * neither repository was updated and no object moved to another threshold
+     * since it was calculated.
+     */
+    private TrackerDifference cachedDifferences(RepositoryTracker lhs, RepositoryTracker rhs, Instant now, Collection<Duration> thresholds) {
+        return cachedDifferences(lhs, rhs, now, thresholds, true);
+    }
+
+    /**
+     * Same as {@link #cachedDifferences(RepositoryTracker, RepositoryTracker, Instant, Collection)},
+     * but only counts the missing objects.
+     */
+    private TrackerDifference cachedCounts(RepositoryTracker lhs, RepositoryTracker rhs, Instant now, Collection<Duration> thresholds) {
+        return cachedDifferences(lhs, rhs, now, thresholds, false);
+    }
+
+    private TrackerDifference cachedDifferences(RepositoryTracker lhs, RepositoryTracker rhs, Instant now, Collection<Duration> thresholds, boolean withEntries) {
+        var cache = withEntries ? diffCache : countCache;
+        var key = new DiffCacheKey(lhs.key(), rhs.key(), thresholds.stream().distinct().sorted().toList());
+        var cached = cache.get(key);
+        if (cached != null && cached.isCurrent(lhs, rhs, now)) {
+            publishedObjectMetrics.trackDiffCacheLookup(true);
+            return cached;
+        }
+        publishedObjectMetrics.trackDiffCacheLookup(false);
+
+        var differences = withEntries ? lhs.differences(rhs, now, thresholds) : lhs.countDifferences(rhs, now, thresholds);
+        if (cache.size() >= MAX_CACHED_DIFFERENCES) {
+            cache.clear();
+        }
+        cache.put(key, differences);
+        return differences;
+    }
+
+    private void evictDifferences(RepositoryKey repository) {
+        for (var cache : List.of(diffCache, countCache)) {
+            cache.keySet().removeIf(key -> key.lhs().equals(repository) || key.rhs().equals(repository));
+        }
     }
 
     /**
@@ -126,16 +300,73 @@ public class PublishedObjectsSummaryService {
     }
 
     /**
-     * Calculate the **one way** published object count difference.
+     * Calculate the **one way** published object count difference for every
+     * threshold and object type. Only update the counters for all
+     * {@link #THRESHOLDS}: the counters of a pair are replaced as a whole.
      */
-    private RepositoryDiff collectPublishedObjectDifferenceAndUpdateCounters(
-        RepositoryTracker lhsTracker, RepositoryTracker rhsTracker, Instant now, Duration threshold, RepositoryObjectType objectType) {
+    private Stream<RepositoryDiff> collectPublishedObjectDifferences(
+        RepositoryTracker lhsTracker, RepositoryTracker rhsTracker, Instant now, Collection<Duration> thresholds, boolean updateCounters) {
 
-        var diffKey = new RepositoryDiffKey(lhsTracker.key(), rhsTracker.key(), objectType, threshold);
+        var res = Stream.<RepositoryDiff>builder();
+        var differences = cachedDifferences(lhsTracker, rhsTracker, now, thresholds);
+        if (updateCounters) {
+            trackDiffSizes(lhsTracker, rhsTracker, differences);
+        }
+        for (var threshold : differences.thresholds()) {
+            for (var objectType: RepositoryObjectType.values()) {
+                var diffKey = new RepositoryDiffKey(lhsTracker.key(), rhsTracker.key(), objectType, threshold);
+                res.add(new RepositoryDiff(diffKey, differences.entries(threshold, objectType)));
+            }
+        }
+        return res.build();
+    }
+
+    /**
+     * Same as {@link #collectPublishedObjectDifferences}, but the difference is
+     * only counted when the stream is consumed. The entries of a difference are
+     * only looked for when its stream of entries is consumed, and are not kept:
+     * a response takes the same memory whatever the size of the differences.
+     */
+    private Stream<RepositoryDiffEntries> streamDifferences(
+        RepositoryTracker lhsTracker, RepositoryTracker rhsTracker, Instant now, Collection<Duration> thresholds, boolean updateCounters) {
+
+        return Stream.of(thresholds).flatMap(ts -> {
+            var counts = cachedCounts(lhsTracker, rhsTracker, now, ts);
+            if (updateCounters) {
+                trackDiffSizes(lhsTracker, rhsTracker, counts);
+            }
+            return counts.thresholds().stream().flatMap(threshold -> Arrays.stream(RepositoryObjectType.values()).map(objectType -> new RepositoryDiffEntries(
+                    new RepositoryDiffKey(lhsTracker.key(), rhsTracker.key(), objectType, threshold),
+                    counts.count(threshold, objectType),
+                    lhsTracker.streamDifference(rhsTracker, now, threshold, objectType)
+            )));
+        });
+    }
+
+    private void updateDiffCounters(Instant now, RepositoryTracker lhsTracker, RepositoryTracker rhsTracker) {
+        publishedObjectMetrics.diffTimer(lhsTracker.key(), rhsTracker.key()).record(() -> {
+            var key = diffCountsKey(lhsTracker, rhsTracker);
+            var differences = pairDifferences.computeIfAbsent(key, k -> new PairDifference(lhsTracker, rhsTracker)).at(now, THRESHOLDS);
+            diffCounts.put(key, differences);
+            trackDiffSizes(lhsTracker, rhsTracker, differences);
+        });
+    }
 
-        var diff = lhsTracker.difference(rhsTracker, now, threshold, objectType);
-        publishedObjectMetrics.trackDiffSize(diffKey, diff.size());
+    private static DiffCacheKey diffCountsKey(RepositoryTracker lhs, RepositoryTracker rhs) {
+        return new DiffCacheKey(lhs.key(), rhs.key(), THRESHOLDS);
+    }
 
-        return new RepositoryDiff(diffKey, diff);
+    /**
+     * Publish the sizes of all thresholds and object types of the pair at once.
+     */
+    private void trackDiffSizes(RepositoryTracker lhsTracker, RepositoryTracker rhsTracker, TrackerDifference differences) {
+        var sizes = new HashMap<RepositoryDiffKey, Long>();
+        for (var threshold : differences.thresholds()) {
+            for (var objectType: RepositoryObjectType.values()) {
+                var diffKey = new RepositoryDiffKey(lhsTracker.key(), rhsTracker.key(), objectType, threshold);
+                sizes.put(diffKey, differences.count(threshold, objectType));
+            }
+        }
+        publishedObjectMetrics.trackDiffSizes(sizes);
     }
 }
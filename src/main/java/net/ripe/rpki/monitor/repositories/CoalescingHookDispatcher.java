@@ -0,0 +1,144 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Runs the update hooks on a dedicated executor, so a slow hook does not delay
+ * the next fetch of the collector that updated the tracker.
+ * <p>
+ * Updates of a tracker are coalesced: while the hooks of a tracker are queued,
+ * another update does not queue them again. Hooks read the tracker when they
+ * run, so they only run on the latest version. The hooks of a tracker never run
+ * concurrently; an update while they are running queues them once more.
+ */
+@Slf4j
+public final class CoalescingHookDispatcher implements UpdateHookDispatcher {
+    public static final String HOOK_DURATION = "rpkimonitoring.repositories.hook.duration";
+    public static final String HOOK_QUEUE = "rpkimonitoring.repositories.hook.queue";
+    public static final String HOOK_UPDATES = "rpkimonitoring.repositories.hook.updates";
+
+    private enum State {
+        QUEUED, RUNNING, RUNNING_UPDATED
+    }
+
+    private final ThreadPoolExecutor executor;
+    // Trackers without a state are idle. Guarded by this.
+    private final Map<RepositoryTracker, State> states = new HashMap<>();
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> hookTimers = new ConcurrentHashMap<>();
+    private final Counter dispatched;
+    private final Counter coalesced;
+    private final Counter dropped;
+
+    public CoalescingHookDispatcher(int threads, int queueSize, MeterRegistry registry) {
+        var executor = new ThreadPoolExecutor(
+                threads, threads,
+                0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("update-hooks-%d").setDaemon(true).build()
+        );
+        this.executor = executor;
+        this.registry = registry;
+
+        Gauge.builder(HOOK_QUEUE, () -> executor.getQueue().size())
+                .description("Number of tracker updates waiting for their hooks to run")
+                .register(registry);
+        dispatched = updatesCounter(registry, "dispatched");
+        coalesced = updatesCounter(registry, "coalesced");
+        dropped = updatesCounter(registry, "dropped");
+    }
+
+    private static Counter updatesCounter(MeterRegistry registry, String result) {
+        return Counter.builder(HOOK_UPDATES)
+                .description("Number of tracker updates by how their hooks were handled")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public void dispatch(RepositoryTracker tracker, List<Hook> hooks) {
+        synchronized (this) {
+            var state = states.get(tracker);
+            if (state == null) {
+                states.put(tracker, State.QUEUED);
+            } else {
+                if (state == State.RUNNING) {
+                    states.put(tracker, State.RUNNING_UPDATED);
+                } else {
+                    coalesced.increment();
+                }
+                return;
+            }
+        }
+        submit(tracker, hooks);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for the hooks that were dispatched before {@link #shutdown()} to finish.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        return executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void submit(RepositoryTracker tracker, List<Hook> hooks) {
+        try {
+            executor.execute(() -> run(tracker, hooks));
+            dispatched.increment();
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                states.remove(tracker);
+            }
+            dropped.increment();
+            log.warn("Dropped the update hooks of {}: {}", tracker.getTag(), e.getMessage());
+        }
+    }
+
+    private void run(RepositoryTracker tracker, List<Hook> hooks) {
+        synchronized (this) {
+            states.put(tracker, State.RUNNING);
+        }
+        for (var hook : hooks) {
+            try {
+                hookTimer(hook.name()).record(() -> hook.f().accept(tracker));
+            } catch (RuntimeException e) {
+                log.error("Update hook {} failed for {}", hook.name(), tracker.getTag(), e);
+            }
+        }
+
+        boolean again;
+        synchronized (this) {
+            again = states.get(tracker) == State.RUNNING_UPDATED;
+            if (again) {
+                states.put(tracker, State.QUEUED);
+            } else {
+                states.remove(tracker);
+            }
+        }
+        if (again) {
+            submit(tracker, hooks);
+        }
+    }
+
+    private Timer hookTimer(String name) {
+        return hookTimers.computeIfAbsent(name, hook -> Timer.builder(HOOK_DURATION)
+                .description("Time to run an update hook")
+                .tag("hook", hook)
+                .register(registry));
+    }
+}
@@ -0,0 +1,111 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.base.Verify;
+import net.ripe.rpki.monitor.util.HeapSize;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Intern table that keeps the objects on the java heap. Trackers share one
+ * canonical {@link RepositoryEntry} for identical entries; entries that only
+ * differ in their timestamps share the uri and hash.
+ */
+final class HeapObjectInterner implements ObjectInterner {
+    private final Map<RepositoryTracker.TrackedObject.Key, KeyRef> keys = new HashMap<>();
+    private final Map<RepositoryEntry, EntryRef> entries = new HashMap<>();
+    private final BitSet usedIds = new BitSet();
+
+    private static final class KeyRef {
+        private final int id;
+        private final RepositoryEntry canonical;
+        private int references;
+
+        private KeyRef(int id, RepositoryEntry canonical) {
+            this.id = id;
+            this.canonical = canonical;
+        }
+    }
+
+    private static final class EntryRef {
+        private final RepositoryEntry entry;
+        private int references;
+
+        private EntryRef(RepositoryEntry entry) {
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Returns the canonical entry.
+     */
+    @Override
+    public synchronized Interned acquire(RepositoryEntry entry) {
+        var keyRef = keys.computeIfAbsent(RepositoryTracker.TrackedObject.key(entry.sha256(), entry.getUri()), k -> {
+            var id = usedIds.nextClearBit(0);
+            usedIds.set(id);
+            return new KeyRef(id, entry);
+        });
+        var entryRef = entries.get(entry);
+        if (entryRef == null) {
+            // Keyed on the canonical entry, the table must not retain the caller's uri and hash.
+            var canonical = entry == keyRef.canonical ? entry : new RepositoryEntry(keyRef.canonical.getUri(), keyRef.canonical.sha256(), entry.creation(), entry.expiration());
+            entryRef = new EntryRef(canonical);
+            entries.put(canonical, entryRef);
+        }
+
+        keyRef.references++;
+        entryRef.references++;
+        return new Interned(keyRef.id, entryRef.entry);
+    }
+
+    @Override
+    public synchronized void release(RepositoryEntry entry) {
+        var key = RepositoryTracker.TrackedObject.key(entry.sha256(), entry.getUri());
+        var keyRef = keys.get(key);
+        var entryRef = entries.get(entry);
+        Verify.verify(keyRef != null && entryRef != null, "released an entry that is not interned: %s", entry.getUri());
+
+        if (--entryRef.references == 0) {
+            entries.remove(entry);
+        }
+        if (--keyRef.references == 0) {
+            keys.remove(key);
+            usedIds.clear(keyRef.id);
+        }
+    }
+
+    @Override
+    public synchronized void releaseAll(ObjectStore objects, int[] ids) {
+        objects.stream().forEach(x -> release(x.entry()));
+    }
+
+    @Override
+    public synchronized int[] ids(ObjectStore objects) {
+        var ids = new int[objects.size()];
+        for (int slot = 0; slot < ids.length; slot++) {
+            var entry = objects.get(slot).entry();
+            var keyRef = keys.get(RepositoryTracker.TrackedObject.key(entry.sha256(), entry.getUri()));
+            Verify.verify(keyRef != null, "object is not interned: %s", entry.getUri());
+            ids[slot] = keyRef.id;
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    @Override
+    public synchronized long storageBytes() {
+        // Key: sha256 and uri; KeyRef: id, canonical and references; EntryRef: entry and references
+        var key = HeapSize.object(2 * HeapSize.REFERENCE);
+        var keyRef = HeapSize.object(2 * Integer.BYTES + HeapSize.REFERENCE);
+        var entryRef = HeapSize.object(Integer.BYTES + HeapSize.REFERENCE);
+        return HeapSize.hashMap(keys.size()) + keys.size() * (key + keyRef)
+                + HeapSize.hashMap(entries.size()) + entries.size() * entryRef
+                + HeapSize.bitSet(usedIds);
+    }
+}
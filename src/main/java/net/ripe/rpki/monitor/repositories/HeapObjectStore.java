@@ -0,0 +1,83 @@
+package net.ripe.rpki.monitor.repositories;
+
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+import net.ripe.rpki.monitor.util.HeapSize;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Object store that keeps the tracked objects on the java heap.
+ * <p>
+ * The retained heap is estimated once, when the store is built.
+ */
+final class HeapObjectStore implements ObjectStore {
+    private final Map<RepositoryTracker.TrackedObject.Key, RepositoryTracker.TrackedObject> objects;
+    private final RepositoryTracker.TrackedObject[] slots;
+    // Object type of the object in each slot, parsed from the uri once.
+    private final RepositoryObjectType[] types;
+    private final RepositoryTracker.StorageSize storageSize;
+
+    HeapObjectStore(Map<RepositoryTracker.TrackedObject.Key, RepositoryTracker.TrackedObject> objects) {
+        this.objects = Collections.unmodifiableMap(objects);
+        this.slots = this.objects.values().toArray(RepositoryTracker.TrackedObject[]::new);
+        this.types = Arrays.stream(slots).map(RepositoryTracker.TrackedObject::getObjectType).toArray(RepositoryObjectType[]::new);
+        this.storageSize = estimateStorageSize(slots);
+    }
+
+    /**
+     * Records are the tracked objects and their entries, the uris include the
+     * hashes. The key of an object shares its uri and hash with the entry.
+     */
+    private static RepositoryTracker.StorageSize estimateStorageSize(RepositoryTracker.TrackedObject[] slots) {
+        // TrackedObject: entry, firstSeen and disposedAt
+        var trackedObject = HeapSize.object(3 * HeapSize.REFERENCE);
+        // RepositoryEntry: uri, sha256, creation and expiration
+        var entry = HeapSize.object(4 * HeapSize.REFERENCE);
+        // Key: sha256 and uri
+        var key = HeapSize.object(2 * HeapSize.REFERENCE);
+
+        long recordBytes = 0;
+        long uriBytes = 0;
+        for (var object : slots) {
+            recordBytes += trackedObject + key + HeapSize.INSTANT + HeapSize.optionalInstant(object.disposedAt())
+                    + entry + HeapSize.optionalInstant(object.entry().creation()) + HeapSize.optionalInstant(object.entry().expiration());
+            uriBytes += HeapSize.string(object.entry().getUri()) + HeapSize.byteArray(object.entry().sha256().length);
+        }
+        // The map, the slots and the types by slot
+        var indexBytes = HeapSize.hashMap(slots.length) + 2 * HeapSize.referenceArray(slots.length);
+        return new RepositoryTracker.StorageSize(RepositoryTracker.Storage.HEAP, recordBytes, uriBytes, indexBytes);
+    }
+
+    @Override
+    public int size() {
+        return slots.length;
+    }
+
+    @Override
+    public RepositoryTracker.TrackedObject get(int slot) {
+        return slots[slot];
+    }
+
+    @Override
+    public RepositoryObjectType type(int slot) {
+        return types[slot];
+    }
+
+    @Override
+    public RepositoryTracker.TrackedObject get(RepositoryTracker.TrackedObject.Key key) {
+        return objects.get(key);
+    }
+
+    @Override
+    public RepositoryTracker.StorageSize storageSize() {
+        return storageSize;
+    }
+
+    @Override
+    public Stream<RepositoryTracker.TrackedObject> stream() {
+        return Arrays.stream(slots);
+    }
+}
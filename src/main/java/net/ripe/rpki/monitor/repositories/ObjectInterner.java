@@ -0,0 +1,61 @@
+package net.ripe.rpki.monitor.repositories;
+
+/**
+ * Intern table for the objects of (possibly) multiple trackers.
+ * <p>
+ * Every distinct object, identified by sha256 and uri, gets a stable integer id
+ * while any tracker holds it. The lowest free id is handed out, so ids stay
+ * dense.
+ * <p>
+ * Objects are reference counted: every tracker snapshot holds a reference to
+ * each of its objects, which is released when the snapshot is replaced.
+ */
+sealed interface ObjectInterner permits HeapObjectInterner, OffHeapObjectInterner {
+    record Interned(int id, RepositoryEntry entry) {}
+
+    /**
+     * An intern table that matches the given storage of the trackers: with
+     * off-heap storage the table does not keep objects on the java heap either.
+     */
+    static ObjectInterner of(RepositoryTracker.Storage storage) {
+        return switch (storage) {
+            case HEAP -> new HeapObjectInterner();
+            case OFF_HEAP -> new OffHeapObjectInterner();
+        };
+    }
+
+    /**
+     * Take a reference to the entry. Returns the id of its object and the
+     * entry to keep in the tracker.
+     */
+    Interned acquire(RepositoryEntry entry);
+
+    /**
+     * Release a reference to the entry. The id of its object is freed once no
+     * references are left.
+     */
+    void release(RepositoryEntry entry);
+
+    /**
+     * Release the references to all objects in the store, which has the given
+     * ids by slot.
+     */
+    void releaseAll(ObjectStore objects, int[] ids);
+
+    /**
+     * Ids of the objects in the store, by slot. All objects must be acquired.
+     */
+    int[] ids(ObjectStore objects);
+
+    /**
+     * Number of distinct objects.
+     */
+    int size();
+
+    /**
+     * Memory used by the table itself: the allocated native memory off-heap, an
+     * estimate of the retained heap on-heap. The canonical entries are counted
+     * by the trackers that hold them.
+     */
+    long storageBytes();
+}
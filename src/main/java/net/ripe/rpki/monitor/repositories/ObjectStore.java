@@ -0,0 +1,83 @@
+package net.ripe.rpki.monitor.repositories;
+
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable storage of the objects tracked in a repository at one point in time.
+ * <p>
+ * Every object is stored in a <i>slot</i> in <code>[0, size())</code>. An update of
+ * a {@link RepositoryTracker} builds a new store and replaces the old one.
+ */
+sealed interface ObjectStore permits HeapObjectStore, OffHeapObjectStore {
+    /**
+     * Build a store for the given objects using the given storage backend.
+     */
+    static ObjectStore of(RepositoryTracker.Storage storage, Map<RepositoryTracker.TrackedObject.Key, RepositoryTracker.TrackedObject> objects) {
+        return switch (storage) {
+            case HEAP -> new HeapObjectStore(objects);
+            case OFF_HEAP -> new OffHeapObjectStore(objects.values());
+        };
+    }
+
+    static ObjectStore empty(RepositoryTracker.Storage storage) {
+        return of(storage, Map.of());
+    }
+
+    /**
+     * Number of objects in this store, including disposed objects.
+     */
+    int size();
+
+    /**
+     * Get the object in the given slot.
+     */
+    RepositoryTracker.TrackedObject get(int slot);
+
+    /**
+     * Get the object with the given key, or <code>null</code> if there is no such object.
+     */
+    RepositoryTracker.TrackedObject get(RepositoryTracker.TrackedObject.Key key);
+
+    /**
+     * Time the object in the given slot was first seen.
+     */
+    default Instant firstSeen(int slot) {
+        return get(slot).firstSeen();
+    }
+
+    /**
+     * Time the object in the given slot was disposed, if it is.
+     */
+    default Optional<Instant> disposedAt(int slot) {
+        return get(slot).disposedAt();
+    }
+
+    /**
+     * Expiration of the object in the given slot, if it has one.
+     */
+    default Optional<Instant> expiration(int slot) {
+        return get(slot).entry().expiration();
+    }
+
+    /**
+     * Object type of the object in the given slot.
+     */
+    default RepositoryObjectType type(int slot) {
+        return get(slot).getObjectType();
+    }
+
+    /**
+     * Size of the memory used for the objects in this store.
+     */
+    RepositoryTracker.StorageSize storageSize();
+
+    default Stream<RepositoryTracker.TrackedObject> stream() {
+        return IntStream.range(0, size()).mapToObj(this::get);
+    }
+}
@@ -0,0 +1,241 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.base.Verify;
+import com.google.common.hash.Hashing;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Intern table that keeps its state in native memory, for trackers with
+ * off-heap storage.
+ * <p>
+ * An object is identified by a digest of its sha256 and uri: the SHA-256 of
+ * both, so no uri or hash is kept on the heap. There is a fixed-size record
+ * per id with the digest and the reference count, and an open-addressing hash
+ * table (linear probing) from the digest to the id. Entries are not
+ * canonicalised: the trackers keep their objects off-heap anyway.
+ * <p>
+ * The segments are allocated in automatic arenas and replaced by larger ones
+ * when they fill up.
+ */
+final class OffHeapObjectInterner implements ObjectInterner {
+    static final int DIGEST_LENGTH = 32;
+
+    // Record layout: digest followed by the reference count, 0 for a free id.
+    private static final long DIGEST = 0;
+    private static final long REFERENCES = 32;
+    static final long RECORD_SIZE = 40;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private MemorySegment records;
+    private int recordCapacity;
+    // Ids in [0, allocatedIds) have been handed out at least once.
+    private int allocatedIds;
+    // No id below this one is free.
+    private int lowestFreeId;
+    private int size;
+
+    // id + 1 of the object in each bucket, 0 for an empty bucket.
+    private MemorySegment table;
+    private int tableCapacity;
+
+    OffHeapObjectInterner() {
+        this.recordCapacity = INITIAL_CAPACITY;
+        this.records = Arena.ofAuto().allocate(recordCapacity * RECORD_SIZE, Long.BYTES);
+        this.tableCapacity = 2 * INITIAL_CAPACITY;
+        this.table = Arena.ofAuto().allocate((long) tableCapacity * Integer.BYTES, Integer.BYTES);
+    }
+
+    /**
+     * Returns the given entry.
+     */
+    @Override
+    public synchronized Interned acquire(RepositoryEntry entry) {
+        var digest = digest(entry);
+        var id = find(digest);
+        if (id < 0) {
+            id = allocate(digest);
+        }
+        setReferences(id, references(id) + 1);
+        return new Interned(id, entry);
+    }
+
+    @Override
+    public synchronized void release(RepositoryEntry entry) {
+        var id = find(digest(entry));
+        Verify.verify(id >= 0, "released an entry that is not interned: %s", entry.getUri());
+        release(id);
+    }
+
+    @Override
+    public synchronized void releaseAll(ObjectStore objects, int[] ids) {
+        for (var id : ids) {
+            release(id);
+        }
+    }
+
+    @Override
+    public synchronized int[] ids(ObjectStore objects) {
+        var ids = new int[objects.size()];
+        for (int slot = 0; slot < ids.length; slot++) {
+            var entry = objects.get(slot).entry();
+            var id = find(digest(entry));
+            Verify.verify(id >= 0, "object is not interned: %s", entry.getUri());
+            ids[slot] = id;
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long storageBytes() {
+        return nativeBytes();
+    }
+
+    /**
+     * Size of the native memory of the table.
+     */
+    synchronized long nativeBytes() {
+        return records.byteSize() + table.byteSize();
+    }
+
+    private void release(int id) {
+        var references = references(id);
+        Verify.verify(references > 0, "released an id that is not in use: %s", id);
+        setReferences(id, references - 1);
+        if (references == 1) {
+            remove(id);
+            size--;
+            lowestFreeId = Math.min(lowestFreeId, id);
+        }
+    }
+
+    private int allocate(byte[] digest) {
+        var id = lowestFreeId;
+        while (id < allocatedIds && references(id) != 0) {
+            id++;
+        }
+        if (id == allocatedIds) {
+            if (allocatedIds == recordCapacity) {
+                growRecords();
+            }
+            allocatedIds++;
+        }
+        lowestFreeId = id + 1;
+
+        MemorySegment.copy(digest, 0, records, ValueLayout.JAVA_BYTE, id * RECORD_SIZE + DIGEST, DIGEST_LENGTH);
+        if (2 * (size + 1) > tableCapacity) {
+            growTable();
+        }
+        insert(id);
+        size++;
+        return id;
+    }
+
+    private int find(byte[] digest) {
+        var key = MemorySegment.ofArray(digest);
+        int mask = tableCapacity - 1;
+        int bucket = hash(key, 0) & mask;
+        while (true) {
+            var value = table.getAtIndex(ValueLayout.JAVA_INT, bucket);
+            if (value == 0) {
+                return -1;
+            }
+            long base = (value - 1) * RECORD_SIZE;
+            if (MemorySegment.mismatch(records, base + DIGEST, base + DIGEST + DIGEST_LENGTH, key, 0, DIGEST_LENGTH) == -1) {
+                return value - 1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    private void insert(int id) {
+        int mask = tableCapacity - 1;
+        int bucket = home(id) & mask;
+        while (table.getAtIndex(ValueLayout.JAVA_INT, bucket) != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table.setAtIndex(ValueLayout.JAVA_INT, bucket, id + 1);
+    }
+
+    /**
+     * Remove the id from the table, shifting back the entries after it that
+     * would otherwise no longer be found.
+     */
+    private void remove(int id) {
+        int mask = tableCapacity - 1;
+        int hole = home(id) & mask;
+        while (table.getAtIndex(ValueLayout.JAVA_INT, hole) != id + 1) {
+            hole = (hole + 1) & mask;
+        }
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            var value = table.getAtIndex(ValueLayout.JAVA_INT, next);
+            if (value == 0) {
+                break;
+            }
+            int wanted = home(value - 1) & mask;
+            // Move the entry into the hole when the hole is between its bucket and its position.
+            boolean movable = hole <= next
+                    ? wanted <= hole || wanted > next
+                    : wanted <= hole && wanted > next;
+            if (movable) {
+                table.setAtIndex(ValueLayout.JAVA_INT, hole, value);
+                hole = next;
+            }
+        }
+        table.setAtIndex(ValueLayout.JAVA_INT, hole, 0);
+    }
+
+    private void growRecords() {
+        var grown = Arena.ofAuto().allocate(2 * recordCapacity * RECORD_SIZE, Long.BYTES);
+        MemorySegment.copy(records, 0, grown, 0, records.byteSize());
+        records = grown;
+        recordCapacity *= 2;
+    }
+
+    private void growTable() {
+        tableCapacity *= 2;
+        table = Arena.ofAuto().allocate((long) tableCapacity * Integer.BYTES, Integer.BYTES);
+        for (int id = 0; id < allocatedIds; id++) {
+            if (references(id) > 0) {
+                insert(id);
+            }
+        }
+    }
+
+    private int references(int id) {
+        return records.get(ValueLayout.JAVA_INT, id * RECORD_SIZE + REFERENCES);
+    }
+
+    private void setReferences(int id, int references) {
+        records.set(ValueLayout.JAVA_INT, id * RECORD_SIZE + REFERENCES, references);
+    }
+
+    private int home(int id) {
+        return hash(records, id * RECORD_SIZE + DIGEST);
+    }
+
+    private static int hash(MemorySegment segment, long offset) {
+        // The digest is uniformly distributed
+        return segment.get(ValueLayout.JAVA_INT_UNALIGNED, offset);
+    }
+
+    private static byte[] digest(RepositoryEntry entry) {
+        return Hashing.sha256().newHasher()
+                .putInt(entry.sha256().length)
+                .putBytes(entry.sha256())
+                .putString(entry.getUri(), StandardCharsets.UTF_8)
+                .hash()
+                .asBytes();
+    }
+}
@@ -0,0 +1,210 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.base.Preconditions;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Object store that keeps the tracked objects in native memory.
+ * <p>
+ * Every object is a fixed-size record in one segment, the URIs are stored
+ * (UTF-8 encoded) back to back in a second segment. The object type is parsed
+ * from the uri once and kept in the record. The only on-heap structure is an
+ * open-addressing hash table of slot numbers. Objects are materialised on
+ * access.
+ * <p>
+ * The segments are allocated in an automatic arena: the memory is released
+ * when the store is no longer reachable, e.g. after the next update of the
+ * tracker and all views on this store are gone.
+ */
+final class OffHeapObjectStore implements ObjectStore {
+    static final int SHA256_LENGTH = 32;
+
+    // Record layout: fields are aligned to their size.
+    private static final long SHA256 = 0;
+    private static final long FIRST_SEEN_SECONDS = 32;
+    private static final long DISPOSED_AT_SECONDS = 40;
+    private static final long CREATION_SECONDS = 48;
+    private static final long EXPIRATION_SECONDS = 56;
+    private static final long FIRST_SEEN_NANOS = 64;
+    private static final long DISPOSED_AT_NANOS = 68;
+    private static final long CREATION_NANOS = 72;
+    private static final long EXPIRATION_NANOS = 76;
+    private static final long URI_OFFSET = 80;
+    private static final long URI_LENGTH = 88;
+    private static final long TYPE = 92;
+    static final long RECORD_SIZE = 96;
+
+    // Marks an absent timestamp; outside of the range of Instant.
+    private static final long ABSENT = Long.MIN_VALUE;
+
+    private static final RepositoryObjectType[] TYPES = RepositoryObjectType.values();
+
+    private final int size;
+    private final MemorySegment records;
+    private final MemorySegment uris;
+    // slot + 1 of the object in each bucket, 0 for an empty bucket.
+    private final int[] index;
+
+    OffHeapObjectStore(Collection<RepositoryTracker.TrackedObject> objects) {
+        this.size = objects.size();
+
+        var encodedUris = new byte[size][];
+        long uriBytes = 0;
+        int slot = 0;
+        for (var object : objects) {
+            encodedUris[slot] = object.entry().getUri().getBytes(StandardCharsets.UTF_8);
+            uriBytes += encodedUris[slot].length;
+            slot++;
+        }
+
+        var arena = Arena.ofAuto();
+        this.records = arena.allocate(size * RECORD_SIZE, Long.BYTES);
+        this.uris = arena.allocate(uriBytes);
+        this.index = new int[capacity(size)];
+
+        long uriOffset = 0;
+        slot = 0;
+        for (var object : objects) {
+            var entry = object.entry();
+            Preconditions.checkArgument(entry.sha256().length == SHA256_LENGTH, "sha256 hashes are 256b/8 bytes long");
+
+            long base = slot * RECORD_SIZE;
+            MemorySegment.copy(entry.sha256(), 0, records, ValueLayout.JAVA_BYTE, base + SHA256, SHA256_LENGTH);
+            writeInstant(base, FIRST_SEEN_SECONDS, FIRST_SEEN_NANOS, Optional.of(object.firstSeen()));
+            writeInstant(base, DISPOSED_AT_SECONDS, DISPOSED_AT_NANOS, object.disposedAt());
+            writeInstant(base, CREATION_SECONDS, CREATION_NANOS, entry.creation());
+            writeInstant(base, EXPIRATION_SECONDS, EXPIRATION_NANOS, entry.expiration());
+
+            var uri = encodedUris[slot];
+            MemorySegment.copy(uri, 0, uris, ValueLayout.JAVA_BYTE, uriOffset, uri.length);
+            records.set(ValueLayout.JAVA_LONG, base + URI_OFFSET, uriOffset);
+            records.set(ValueLayout.JAVA_INT, base + URI_LENGTH, uri.length);
+            records.set(ValueLayout.JAVA_INT, base + TYPE, object.getObjectType().ordinal());
+            uriOffset += uri.length;
+
+            int mask = index.length - 1;
+            int bucket = hash(entry.sha256(), entry.getUri()) & mask;
+            while (index[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            index[bucket] = slot + 1;
+            slot++;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public RepositoryTracker.TrackedObject get(int slot) {
+        Preconditions.checkElementIndex(slot, size);
+        long base = slot * RECORD_SIZE;
+
+        var sha256 = records.asSlice(base + SHA256, SHA256_LENGTH).toArray(ValueLayout.JAVA_BYTE);
+        var uri = new String(uriBytes(base).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+        var entry = new RepositoryEntry(
+                uri,
+                sha256,
+                readInstant(base, CREATION_SECONDS, CREATION_NANOS),
+                readInstant(base, EXPIRATION_SECONDS, EXPIRATION_NANOS)
+        );
+        return new RepositoryTracker.TrackedObject(
+                entry,
+                readInstant(base, FIRST_SEEN_SECONDS, FIRST_SEEN_NANOS).orElseThrow(),
+                readInstant(base, DISPOSED_AT_SECONDS, DISPOSED_AT_NANOS)
+        );
+    }
+
+    @Override
+    public Instant firstSeen(int slot) {
+        Preconditions.checkElementIndex(slot, size);
+        return readInstant(slot * RECORD_SIZE, FIRST_SEEN_SECONDS, FIRST_SEEN_NANOS).orElseThrow();
+    }
+
+    @Override
+    public Optional<Instant> disposedAt(int slot) {
+        Preconditions.checkElementIndex(slot, size);
+        return readInstant(slot * RECORD_SIZE, DISPOSED_AT_SECONDS, DISPOSED_AT_NANOS);
+    }
+
+    @Override
+    public Optional<Instant> expiration(int slot) {
+        Preconditions.checkElementIndex(slot, size);
+        return readInstant(slot * RECORD_SIZE, EXPIRATION_SECONDS, EXPIRATION_NANOS);
+    }
+
+    @Override
+    public RepositoryObjectType type(int slot) {
+        Preconditions.checkElementIndex(slot, size);
+        return TYPES[records.get(ValueLayout.JAVA_INT, slot * RECORD_SIZE + TYPE)];
+    }
+
+    @Override
+    public RepositoryTracker.TrackedObject get(RepositoryTracker.TrackedObject.Key key) {
+        var uri = MemorySegment.ofArray(key.uri().getBytes(StandardCharsets.UTF_8));
+        var sha256 = MemorySegment.ofArray(key.sha256());
+
+        int mask = index.length - 1;
+        int bucket = hash(key.sha256(), key.uri()) & mask;
+        while (index[bucket] != 0) {
+            int slot = index[bucket] - 1;
+            long base = slot * RECORD_SIZE;
+            if (sha256.byteSize() == SHA256_LENGTH
+                    && MemorySegment.mismatch(records, base + SHA256, base + SHA256 + SHA256_LENGTH, sha256, 0, SHA256_LENGTH) == -1
+                    && uriBytes(base).mismatch(uri) == -1) {
+                return get(slot);
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return null;
+    }
+
+    @Override
+    public RepositoryTracker.StorageSize storageSize() {
+        return new RepositoryTracker.StorageSize(RepositoryTracker.Storage.OFF_HEAP, records.byteSize(), uris.byteSize(), (long) index.length * Integer.BYTES);
+    }
+
+    private MemorySegment uriBytes(long base) {
+        return uris.asSlice(records.get(ValueLayout.JAVA_LONG, base + URI_OFFSET), records.get(ValueLayout.JAVA_INT, base + URI_LENGTH));
+    }
+
+    private void writeInstant(long base, long secondsOffset, long nanosOffset, Optional<Instant> value) {
+        records.set(ValueLayout.JAVA_LONG, base + secondsOffset, value.map(Instant::getEpochSecond).orElse(ABSENT));
+        records.set(ValueLayout.JAVA_INT, base + nanosOffset, value.map(Instant::getNano).orElse(0));
+    }
+
+    private Optional<Instant> readInstant(long base, long secondsOffset, long nanosOffset) {
+        var seconds = records.get(ValueLayout.JAVA_LONG, base + secondsOffset);
+        if (seconds == ABSENT) {
+            return Optional.empty();
+        }
+        return Optional.of(Instant.ofEpochSecond(seconds, records.get(ValueLayout.JAVA_INT, base + nanosOffset)));
+    }
+
+    /**
+     * Smallest power of two that keeps the load factor of the index at or below 0.5.
+     */
+    private static int capacity(int size) {
+        return Math.max(4, Integer.highestOneBit(Math.max(1, 2 * size - 1)) << 1);
+    }
+
+    private static int hash(byte[] sha256, String uri) {
+        // The hash is uniformly distributed. Mix in the URI for identical objects at different paths.
+        long h = 0;
+        for (int i = 0; i < Math.min(Long.BYTES, sha256.length); i++) {
+            h = (h << 8) | (sha256[i] & 0xff);
+        }
+        h ^= uri.hashCode() * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,121 @@
+package net.ripe.rpki.monitor.repositories;
+
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The live difference between an ordered pair of trackers: the objects of the
+ * left-hand side that are missing from the right-hand side, with the time since
+ * when they are missing.
+ * <p>
+ * When either tracker was updated, only the objects in its {@link RepositoryTracker.UpdateDelta}s
+ * are re-evaluated, against the current snapshots of both trackers. That makes
+ * applying a delta idempotent and independent of the order in which the updates
+ * of the two trackers are applied. Updates that were coalesced are caught up
+ * with from the recent deltas of the tracker; only when those are gone as well,
+ * the difference is rebuilt from scratch.
+ * <p>
+ * The missing objects are counted by type and by the time since when they are
+ * missing, which is the time of an update of either tracker. The thresholds are
+ * applied on those counts when reading the difference, so the difference ages
+ * without any updates and reading it does not depend on the number of objects.
+ */
+public final class PairDifference {
+    private final RepositoryTracker lhs;
+    private final RepositoryTracker rhs;
+
+    private final Map<RepositoryTracker.TrackedObject.Key, Missing> missing = new HashMap<>();
+    // Number of missing objects by type and by the time since when they are missing.
+    private final Map<RepositoryObjectType, NavigableMap<Instant, Long>> counts = new EnumMap<>(RepositoryObjectType.class);
+    // Versions of the trackers whose changes are reflected, -1 before the first build.
+    private long lhsVersion = -1;
+    private long rhsVersion = -1;
+    // Number of objects evaluated since this difference was created.
+    private long evaluated;
+
+    private record Missing(RepositoryObjectType type, Instant since) {}
+
+    public PairDifference(RepositoryTracker lhs, RepositoryTracker rhs) {
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    public RepositoryTracker lhs() {
+        return lhs;
+    }
+
+    public RepositoryTracker rhs() {
+        return rhs;
+    }
+
+    /**
+     * The difference at time <i>t</i>, at or after the last update of both
+     * trackers, after applying the updates of the trackers since the previous
+     * call. Only counts the missing objects.
+     */
+    public synchronized TrackerDifference at(Instant t, Collection<Duration> thresholds) {
+        var l = lhs.snapshot();
+        var r = rhs.snapshot();
+        var lhsDeltas = l.deltasAfter(lhsVersion);
+        var rhsDeltas = r.deltasAfter(rhsVersion);
+        if (lhsVersion < 0 || lhsDeltas.isEmpty() || rhsDeltas.isEmpty()) {
+            rebuild(l, r);
+        } else {
+            for (var deltas : List.of(lhsDeltas.get(), rhsDeltas.get())) {
+                for (var delta : deltas) {
+                    delta.added().forEach(key -> evaluate(key, l, r));
+                    delta.disposed().forEach(key -> evaluate(key, l, r));
+                    delta.purged().forEach(key -> evaluate(key, l, r));
+                }
+            }
+        }
+        lhsVersion = l.delta.version();
+        rhsVersion = r.delta.version();
+
+        var res = new TrackerDifference(t, thresholds, false, lhsVersion, rhsVersion);
+        counts.forEach((type, bySince) -> bySince.forEach((since, count) -> res.add(type, since, count)));
+        return res;
+    }
+
+    /**
+     * Number of objects that were evaluated, in total.
+     */
+    synchronized long evaluated() {
+        return evaluated;
+    }
+
+    private void rebuild(TrackerSnapshot l, TrackerSnapshot r) {
+        missing.clear();
+        counts.clear();
+        for (int slot = 0; slot < l.objects.size(); slot++) {
+            if (l.objects.disposedAt(slot).isEmpty()) {
+                evaluate(l.objects.get(slot).key(), l, r);
+            }
+        }
+    }
+
+    private void evaluate(RepositoryTracker.TrackedObject.Key key, TrackerSnapshot l, TrackerSnapshot r) {
+        evaluated++;
+        var x = l.objects.get(key);
+        var since = x != null ? RepositoryTracker.missingSince(x, r.objects.get(key), Instant.MAX) : null;
+
+        var previous = since != null
+                ? missing.put(key, new Missing(x.getObjectType(), since))
+                : missing.remove(key);
+        if (previous != null) {
+            counts.get(previous.type()).merge(previous.since(), -1L, (n, m) -> n + m == 0 ? null : n + m);
+        }
+        if (since != null) {
+            counts.computeIfAbsent(x.getObjectType(), type -> new TreeMap<>()).merge(since, 1L, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.ripe.rpki.monitor.repositories;
+
+import java.util.*;
+
+/**
+ * Fingerprints of the live objects per publication point: the directory of the
+ * object uri.
+ * <p>
+ * With the {@link RepositoryTracker.Fingerprint} of the whole repository this
+ * is a tree of fingerprints: repository, publication point and object. When two
+ * repositories differ, it is usually in a few publication points, so a
+ * difference only needs to descend into the publication points with a different
+ * fingerprint. Like the repository fingerprint it is maintained from the update
+ * deltas.
+ */
+final class PublicationPoints {
+    static final PublicationPoints EMPTY = new PublicationPoints(Map.of());
+
+    record Node(long fingerprint, long objects) {
+        private Node plus(long hash, long count) {
+            return new Node(fingerprint + hash, objects + count);
+        }
+    }
+
+    private final Map<String, Node> nodes;
+
+    private PublicationPoints(Map<String, Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    PublicationPoints apply(Collection<RepositoryTracker.TrackedObject.Key> added, Collection<RepositoryTracker.TrackedObject.Key> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return this;
+        }
+        var res = new HashMap<>(nodes);
+        for (var key : added) {
+            var hash = RepositoryTracker.Fingerprint.hash(key);
+            res.merge(of(key.uri()), new Node(hash, 1), (x, y) -> x.plus(hash, 1));
+        }
+        for (var key : removed) {
+            var hash = RepositoryTracker.Fingerprint.hash(key);
+            res.computeIfPresent(of(key.uri()), (uri, x) -> x.objects == 1 ? null : x.plus(-hash, -1));
+        }
+        return new PublicationPoints(res);
+    }
+
+    /**
+     * The publication point of an object: its uri up to and including the last slash.
+     */
+    static String of(String uri) {
+        return uri.substring(0, uri.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Whether both have the same objects in the publication point.
+     */
+    boolean sameObjects(PublicationPoints other, String publicationPoint) {
+        return Objects.equals(nodes.get(publicationPoint), other.nodes.get(publicationPoint));
+    }
+
+    /**
+     * The publication points with different objects, in order of uri.
+     */
+    List<RepositoryTracker.PublicationPointDifference> differences(PublicationPoints other) {
+        var uris = new TreeSet<>(nodes.keySet());
+        uris.addAll(other.nodes.keySet());
+
+        var res = new ArrayList<RepositoryTracker.PublicationPointDifference>();
+        for (var uri : uris) {
+            var lhs = nodes.get(uri);
+            var rhs = other.nodes.get(uri);
+            if (!Objects.equals(lhs, rhs)) {
+                res.add(new RepositoryTracker.PublicationPointDifference(
+                        uri,
+                        lhs == null ? 0 : lhs.objects,
+                        rhs == null ? 0 : rhs.objects
+                ));
+            }
+        }
+        return res;
+    }
+}
@@ -20,20 +20,33 @@ import static java.util.stream.Collectors.toUnmodifiableList;
  */
 public class RepositoriesState {
     private final List<RepositoryTracker> repositories;
-    private final AtomicReference<List<Consumer<RepositoryTracker>>> updateHooks = new AtomicReference<>(List.of());
+    private final ObjectInterner interner;
+    private final AtomicReference<List<UpdateHookDispatcher.Hook>> updateHooks = new AtomicReference<>(List.of());
+    private volatile UpdateHookDispatcher hookDispatcher = UpdateHookDispatcher.SYNCHRONOUS;
 
     /**
      * Create the initial state from the given repository config. The config
      * defines the repositories as a pair of tag and url, respectively.
      */
     public static RepositoriesState init(Collection<Triple<String, String, RepositoryTracker.Type>> config, Duration gracePeriod) {
-        var repos = config.stream().map(x -> RepositoryTracker.empty(x.getLeft(), x.getMiddle(), x.getRight(), gracePeriod)).collect(Collectors.toList());
+        return init(config, gracePeriod, RepositoryTracker.Storage.HEAP);
+    }
+
+    /**
+     * Same as {@link #init(Collection, Duration)} but with the trackers storing
+     * their objects in the given storage.
+     */
+    public static RepositoriesState init(Collection<Triple<String, String, RepositoryTracker.Type>> config, Duration gracePeriod, RepositoryTracker.Storage storage) {
+        // One intern table for all trackers: they mostly hold the same objects.
+        var interner = ObjectInterner.of(storage);
+        var repos = config.stream().map(x -> RepositoryTracker.empty(x.getLeft(), x.getMiddle(), x.getRight(), gracePeriod, storage, interner)).collect(Collectors.toList());
 
-        return new RepositoriesState(repos);
+        return new RepositoriesState(repos, interner);
     }
 
-    RepositoriesState(List<RepositoryTracker> repositories) {
+    RepositoriesState(List<RepositoryTracker> repositories, ObjectInterner interner) {
         this.repositories = List.copyOf(repositories);
+        this.interner = interner;
     }
 
     public Optional<RepositoryTracker> getTrackerByTag(String tag) {
@@ -43,12 +56,34 @@ public class RepositoriesState {
     public RepositoryTracker updateByTag(String tag, Instant t, Stream<RepositoryEntry> entries) {
         var tracker = getTrackerByTag(tag).orElseThrow(() -> new IllegalArgumentException("No tracked repository by tag: " + tag));
         tracker.update(t, entries);
-        updateHooks.get().forEach(f -> f.accept(tracker));
+        hookDispatcher.dispatch(tracker, updateHooks.get());
         return tracker;
     }
 
     public void addHook(Consumer<RepositoryTracker> f) {
-        updateHooks.getAndUpdate(xs -> ImmutableList.<Consumer<RepositoryTracker>>builder().addAll(xs).add(f).build());
+        updateHooks.getAndUpdate(xs -> ImmutableList.<UpdateHookDispatcher.Hook>builder().addAll(xs).add(new UpdateHookDispatcher.Hook("hook-" + xs.size(), f)).build());
+    }
+
+    /**
+     * Add a hook with a name, for the metrics of the hook dispatcher.
+     */
+    public void addHook(String name, Consumer<RepositoryTracker> f) {
+        updateHooks.getAndUpdate(xs -> ImmutableList.<UpdateHookDispatcher.Hook>builder().addAll(xs).add(new UpdateHookDispatcher.Hook(name, f)).build());
+    }
+
+    /**
+     * Run the hooks with the given dispatcher. By default, hooks run synchronously
+     * on the thread that updated the tracker.
+     */
+    public void dispatchHooksWith(UpdateHookDispatcher dispatcher) {
+        this.hookDispatcher = dispatcher;
+    }
+
+    /**
+     * Memory used by the intern table shared by the trackers.
+     */
+    public long internTableBytes() {
+        return interner.storageBytes();
     }
 
     /**
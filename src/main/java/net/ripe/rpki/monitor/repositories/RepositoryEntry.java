@@ -31,11 +31,14 @@ public class RepositoryEntry implements HasHashAndUri {
         );
     }
 
+    /**
+     * The creation of an object published by core is the time it was published.
+     */
     public static RepositoryEntry from(PublishedObjectEntry x) {
         return new RepositoryEntry(
             x.getUri(),
             x.sha256(),
-            Optional.empty(),
+            Optional.ofNullable(x.updatedAt()),
             Optional.empty()
         );
     }
@@ -1,5 +1,6 @@
 package net.ripe.rpki.monitor.repositories;
 
+import com.google.common.primitives.Longs;
 import lombok.Getter;
 import net.ripe.rpki.commons.util.RepositoryObjectType;
 import net.ripe.rpki.monitor.HasHashAndUri;
@@ -10,10 +11,11 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.*;
 
 /**
@@ -38,13 +40,167 @@ public class RepositoryTracker {
     // Time to keep disposed objects around
     private final Duration gracePeriod;
 
+    private final Storage storage;
+
+    // Shares the objects with the other trackers of the same state
+    private final ObjectInterner interner;
+
     // Stores the repository objects index by their key (sha256 and uri)
-    private final AtomicReference<Map<TrackedObject.Key, TrackedObject>> objects;
+    private final AtomicReference<TrackerSnapshot> snapshot;
+
+    // Churn of all updates by object type
+    private final AtomicReference<Map<RepositoryObjectType, Churn>> churn = new AtomicReference<>(Map.of());
 
     public enum Type {
         CORE, RRDP, RSYNC
     }
 
+    /**
+     * Where the tracked objects are stored: on the java heap, or in native memory
+     * managed by the Foreign Function &amp; Memory API. Off-heap storage keeps the
+     * (large number of long-lived) objects out of the old generation at the cost
+     * of materialising objects on access.
+     */
+    public enum Storage {
+        HEAP, OFF_HEAP
+    }
+
+    /**
+     * Memory used for the tracked objects in the given storage. For off-heap
+     * storage the records and uris are allocated outside of the java heap and
+     * only the index is on-heap; for heap storage all are estimates of the
+     * retained heap, in which objects shared with other trackers are counted
+     * for each tracker. The index includes the orderings and presence bitsets
+     * of the snapshot, but not the intern table shared with other trackers.
+     */
+    public record StorageSize(Storage storage, long recordBytes, long uriBytes, long indexBytes) {
+        public long totalBytes() {
+            return recordBytes + uriBytes + indexBytes;
+        }
+    }
+
+    /**
+     * Number of objects in the repository as of the last update. The key bytes
+     * are the lengths of the hashes and URIs of the live objects.
+     */
+    public record Counts(long live, long disposed, Map<RepositoryObjectType, Long> liveByType, long liveKeyBytes) {
+        public static final Counts NONE = new Counts(0, 0, Map.of(), 0);
+
+        static Counts of(Collection<TrackedObject> live, int disposed) {
+            var liveByType = new EnumMap<RepositoryObjectType, Long>(RepositoryObjectType.class);
+            long liveKeyBytes = 0;
+            for (var object : live) {
+                liveByType.merge(object.getObjectType(), 1L, Long::sum);
+                liveKeyBytes += object.entry().sha256().length + object.entry().getUri().length();
+            }
+            return new Counts(live.size(), disposed, Collections.unmodifiableMap(liveByType), liveKeyBytes);
+        }
+    }
+
+    /**
+     * The objects that changed in an update: newly present (or re-published),
+     * newly disposed and purged after the grace period. Versions of a tracker
+     * increase by one on every update.
+     */
+    public record UpdateDelta(long version, Instant t, List<TrackedObject.Key> added, List<TrackedObject.Key> disposed, List<TrackedObject.Key> purged) {
+        static final UpdateDelta INITIAL = new UpdateDelta(0, Instant.MIN, List.of(), List.of(), List.of());
+    }
+
+    /**
+     * Number of objects that changed in updates. An object re-published at the
+     * same uri with a new hash counts as re-published, not as added and disposed.
+     */
+    public record Churn(long added, long republished, long disposed, long purged) {
+        public static final Churn NONE = new Churn(0, 0, 0, 0);
+
+        public Churn plus(Churn other) {
+            return new Churn(added + other.added, republished + other.republished, disposed + other.disposed, purged + other.purged);
+        }
+    }
+
+    /**
+     * The changes of an update by object type. Types without changes are absent.
+     */
+    public record UpdateReport(long version, Instant t, Map<RepositoryObjectType, Churn> byType) {
+        public static UpdateReport of(UpdateDelta delta) {
+            var addedUris = delta.added().stream().map(TrackedObject.Key::uri).collect(toSet());
+            var disposedUris = delta.disposed().stream().map(TrackedObject.Key::uri).collect(toSet());
+
+            // added, republished, disposed and purged, by type
+            var counts = new EnumMap<RepositoryObjectType, long[]>(RepositoryObjectType.class);
+            for (var key : delta.added()) {
+                counts.computeIfAbsent(RepositoryObjectType.parse(key.uri()), type -> new long[4])[disposedUris.contains(key.uri()) ? 1 : 0]++;
+            }
+            for (var key : delta.disposed()) {
+                if (!addedUris.contains(key.uri())) {
+                    counts.computeIfAbsent(RepositoryObjectType.parse(key.uri()), type -> new long[4])[2]++;
+                }
+            }
+            for (var key : delta.purged()) {
+                counts.computeIfAbsent(RepositoryObjectType.parse(key.uri()), type -> new long[4])[3]++;
+            }
+
+            var byType = new EnumMap<RepositoryObjectType, Churn>(RepositoryObjectType.class);
+            counts.forEach((type, x) -> byType.put(type, new Churn(x[0], x[1], x[2], x[3])));
+            return new UpdateReport(delta.version(), delta.t(), Collections.unmodifiableMap(byType));
+        }
+
+        public Churn total() {
+            return byType.values().stream().reduce(Churn.NONE, Churn::plus);
+        }
+    }
+
+    /**
+     * Order-independent fingerprint of the live objects: the sum of a hash of
+     * every object key, in total and per object type. It is maintained from the
+     * update deltas, so it costs nothing for objects that did not change.
+     * <p>
+     * Trackers with the same live objects have the same fingerprint. The reverse
+     * does not hold in theory, but a collision of 64-bit sums is negligible.
+     */
+    public record Fingerprint(long all, Map<RepositoryObjectType, Long> byType) {
+        public static final Fingerprint EMPTY = new Fingerprint(0, Map.of());
+
+        Fingerprint apply(Collection<TrackedObject.Key> added, Collection<TrackedObject.Key> removed) {
+            if (added.isEmpty() && removed.isEmpty()) {
+                return this;
+            }
+            var all = this.all;
+            var byType = new EnumMap<RepositoryObjectType, Long>(RepositoryObjectType.class);
+            byType.putAll(this.byType);
+            for (var key : added) {
+                var hash = hash(key);
+                all += hash;
+                byType.merge(RepositoryObjectType.parse(key.uri()), hash, Long::sum);
+            }
+            for (var key : removed) {
+                var hash = hash(key);
+                all -= hash;
+                // A type without objects sums to zero, drop it so equal sets have equal maps.
+                byType.merge(RepositoryObjectType.parse(key.uri()), -hash, (x, y) -> x + y == 0 ? null : x + y);
+            }
+            return new Fingerprint(all, Collections.unmodifiableMap(byType));
+        }
+
+        /**
+         * Whether both fingerprints cover the same objects of the given type.
+         */
+        public boolean sameObjects(Fingerprint other, RepositoryObjectType type) {
+            return byType.getOrDefault(type, 0L).equals(other.byType.getOrDefault(type, 0L));
+        }
+
+        static long hash(TrackedObject.Key key) {
+            // The hash is a uniform hash already, mix in the uri for objects published at multiple locations.
+            return Longs.fromByteArray(key.sha256()) ^ (key.uri().hashCode() * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * A publication point with different objects in two repositories, and the
+     * number of live objects in it in each of them.
+     */
+    public record PublicationPointDifference(String uri, long objects, long otherObjects) {}
+
     public record TrackedObject(RepositoryEntry entry, Instant firstSeen, Optional<Instant> disposedAt) {
         public record Key(byte[] sha256, @Getter String uri) implements HasHashAndUri {
             @Override
@@ -96,7 +252,21 @@ public class RepositoryTracker {
      * Get an empty repository.
      */
     public static RepositoryTracker empty(String tag, String url, Type type, Duration gracePeriod) {
-        return new RepositoryTracker(tag, url, type, gracePeriod);
+        return empty(tag, url, type, gracePeriod, Storage.HEAP);
+    }
+
+    /**
+     * Get an empty repository that stores its objects in the given storage.
+     */
+    public static RepositoryTracker empty(String tag, String url, Type type, Duration gracePeriod, Storage storage) {
+        return empty(tag, url, type, gracePeriod, storage, ObjectInterner.of(storage));
+    }
+
+    /**
+     * Get an empty repository that interns its objects in the given table.
+     */
+    static RepositoryTracker empty(String tag, String url, Type type, Duration gracePeriod, Storage storage, ObjectInterner interner) {
+        return new RepositoryTracker(tag, url, type, gracePeriod, storage, interner);
     }
 
     /**
@@ -108,12 +278,14 @@ public class RepositoryTracker {
         return repo;
     }
 
-    private RepositoryTracker(String tag, String url, Type type, Duration gracePeriod) {
+    private RepositoryTracker(String tag, String url, Type type, Duration gracePeriod, Storage storage, ObjectInterner interner) {
         this.tag = tag;
         this.url = url;
         this.type = type;
         this.gracePeriod = gracePeriod;
-        this.objects = new AtomicReference<>(emptyMap());
+        this.storage = storage;
+        this.interner = interner;
+        this.snapshot = new AtomicReference<>(new TrackerSnapshot(ObjectStore.empty(storage), new int[0], Counts.NONE, Fingerprint.EMPTY, PublicationPoints.EMPTY, List.of(UpdateDelta.INITIAL)));
     }
 
     /**
@@ -125,22 +297,95 @@ public class RepositoryTracker {
      * a next update where <code>last-seen < t-gc</code>.
      * <p>
      * Time of updates on the repository must be strictly increasing.
+     * <p>
+     * The objects are interned: the new snapshot takes references to its
+     * objects before the references of the replaced snapshot are released,
+     * so objects that stay keep their id. The references of the replaced
+     * snapshot are released once no difference is calculated from it.
      */
-    public void update(Instant t, Stream<RepositoryEntry> entries) {
+    public synchronized void update(Instant t, Stream<RepositoryEntry> entries) {
         var threshold = t.minus(gracePeriod);
-        this.objects.getAndUpdate((objects) -> {
-            var newObjects = entries
-                    .map(x -> TrackedObject.of(x, firstSeenAt(objects, x.sha256(), x.getUri(), t)))
-                    .collect(toMap(TrackedObject::key, Function.identity()));
-            var disposed = objects.values().stream()
+        var current = snapshot.get();
+        var objects = current.objects;
+        // Read all entries before interning any, so a failing stream does not hold references.
+        var read = entries
+                .map(x -> TrackedObject.of(x, firstSeenAt(objects, x.sha256(), x.getUri(), t)))
+                .collect(toMap(TrackedObject::key, Function.identity()));
+
+        // Release the references taken so far when the new snapshot can not be built.
+        var acquired = new ArrayList<RepositoryEntry>(read.size());
+        UpdateDelta delta;
+        TrackerSnapshot next;
+        try {
+            // Keyed on the canonical entries, so the snapshot does not retain the uris and hashes that were read.
+            var newObjects = HashMap.<TrackedObject.Key, TrackedObject>newHashMap(read.size());
+            for (var x : read.values()) {
+                var entry = interner.acquire(x.entry()).entry();
+                acquired.add(entry);
+                var object = new TrackedObject(entry, x.firstSeen, x.disposedAt);
+                newObjects.put(object.key(), object);
+            }
+            var added = newObjects.keySet().stream()
+                    .filter(key -> Optional.ofNullable(objects.get(key)).map(x -> x.disposedAt.isPresent()).orElse(true))
+                    .toList();
+            var gone = objects.stream()
                     .filter(x -> ! newObjects.containsKey(x.key()))
-                    .filter(x -> x.disposedAt.map(disposedAt -> disposedAt.isAfter(threshold)).orElse(true))
+                    .collect(partitioningBy(x -> x.disposedAt.map(disposedAt -> disposedAt.isAfter(threshold)).orElse(true)));
+            var disposed = gone.get(true).stream()
                     .map(x -> x.dispose(t))
                     .collect(toUnmodifiableMap(TrackedObject::key, Function.identity()));
+            disposed.values().forEach(x -> acquired.add(interner.acquire(x.entry()).entry()));
+            var counts = Counts.of(newObjects.values(), disposed.size());
+            delta = new UpdateDelta(
+                    current.delta.version() + 1,
+                    t,
+                    added,
+                    gone.get(true).stream().filter(x -> x.disposedAt.isEmpty()).map(TrackedObject::key).toList(),
+                    gone.get(false).stream().map(TrackedObject::key).toList()
+            );
+
+            var fingerprint = current.fingerprint.apply(delta.added(), delta.disposed());
+            var publicationPoints = current.publicationPoints.apply(delta.added(), delta.disposed());
 
             newObjects.putAll(disposed);
-            return Collections.unmodifiableMap(newObjects);
-        });
+            var store = ObjectStore.of(storage, newObjects);
+            next = new TrackerSnapshot(store, interner.ids(store), counts, fingerprint, publicationPoints, current.recentDeltasWith(delta));
+        } catch (RuntimeException e) {
+            acquired.forEach(interner::release);
+            throw e;
+        }
+        snapshot.set(next);
+        unpin(current);
+
+        var report = UpdateReport.of(delta);
+        if (!report.byType().isEmpty()) {
+            var totals = new EnumMap<RepositoryObjectType, Churn>(RepositoryObjectType.class);
+            totals.putAll(churn.get());
+            report.byType().forEach((type, x) -> totals.merge(type, x, Churn::plus));
+            churn.set(Collections.unmodifiableMap(totals));
+        }
+    }
+
+    /**
+     * The changes of the last update.
+     */
+    public UpdateDelta lastUpdate() {
+        return snapshot.get().delta;
+    }
+
+    /**
+     * The changes of the last update by object type.
+     */
+    public UpdateReport lastReport() {
+        return UpdateReport.of(lastUpdate());
+    }
+
+    /**
+     * The changes of all updates by object type. Hooks of coalesced updates do
+     * not see the reports of the updates in between, but the totals include them.
+     */
+    public Map<RepositoryObjectType, Churn> totalChurn() {
+        return churn.get();
     }
 
     /**
@@ -153,30 +398,192 @@ public class RepositoryTracker {
      * time <i>t - threshold</i>.
      */
     public Set<RepositoryEntry> difference(RepositoryTracker other, Instant t, Duration threshold) {
-        var lhs = new View(objects.get(), Predicates.firstSeenBefore(t.minus(threshold)).and(Predicates.nonDisposed()));
-        var rhs = new View(other.objects.get(), Predicates.firstSeenBefore(t).and(Predicates.notDisposedAt(t.minus(threshold))));
-        return lhs.entries()
-                .filter(Predicate.not(rhs::hasObject))
-                .collect(toSet());
+        return differences(other, t, List.of(threshold)).entries(threshold);
     }
 
     /**
      * Same as @difference but also filters by the object type.
      */
     public Set<RepositoryEntry> difference(RepositoryTracker other, Instant t, Duration threshold, RepositoryObjectType objectType) {
-        var lhs = new View(objects.get(), Predicates
-                .firstSeenBefore(t.minus(threshold))
-                .and(Predicates.nonDisposed())
-                .and(Predicates.ofType(objectType)));
-
-        var rhs = new View(other.objects.get(), Predicates
-                .firstSeenBefore(t)
-                .and(Predicates.notDisposedAt(t.minus(threshold)))
-                .and(Predicates.ofType(objectType)));
-
-        return lhs.entries()
-                .filter(Predicate.not(rhs::hasObject))
-                .collect(toSet());
+        return differences(other, t, List.of(threshold)).entries(threshold, objectType);
+    }
+
+    /**
+     * Same as @difference for multiple thresholds and all object types at once.
+     * <p>
+     * An object is missing since it was first seen when the other repository
+     * does not have it at time <i>t</i>, or since the latest of first seen and
+     * disposal from the other repository when it was disposed there.
+     * <p>
+     * For trackers that share their intern table, at or after the last update of
+     * both, the candidates are the ids of the live objects of this repository that
+     * are not present in the other (an <code>ANDNOT</code> of the presence bitsets),
+     * plus those disposed from the other. Otherwise this walks the live objects
+     * first seen before or at time <i>t</i> and looks each of them up.
+     * <p>
+     * At or after the last update of both, repositories, object types and
+     * publication points with the same fingerprint have no difference, whatever
+     * the thresholds.
+     */
+    public TrackerDifference differences(RepositoryTracker other, Instant t, Collection<Duration> thresholds) {
+        return differences(other, t, thresholds, true);
+    }
+
+    /**
+     * Same as @differences, but only counts the missing objects. For trackers
+     * that share their intern table this does not allocate per object, so use
+     * this when only the sizes are needed (e.g. for metrics).
+     */
+    public TrackerDifference countDifferences(RepositoryTracker other, Instant t, Collection<Duration> thresholds) {
+        return differences(other, t, thresholds, false);
+    }
+
+    private TrackerDifference differences(RepositoryTracker other, Instant t, Collection<Duration> thresholds, boolean withEntries) {
+        // The ids of both snapshots are compared: they must not be re-used while doing so.
+        var lhs = pin();
+        try {
+            var rhs = other.pin();
+            try {
+                return differences(lhs, rhs, interner == other.interner, t, thresholds, withEntries);
+            } finally {
+                other.unpin(rhs);
+            }
+        } finally {
+            unpin(lhs);
+        }
+    }
+
+    private static TrackerDifference differences(TrackerSnapshot lhs, TrackerSnapshot rhs, boolean shared, Instant t, Collection<Duration> thresholds, boolean withEntries) {
+        var res = new TrackerDifference(t, thresholds, withEntries, lhs.delta.version(), rhs.delta.version());
+
+        var latest = !t.isBefore(lhs.updatedAt) && !t.isBefore(rhs.updatedAt);
+        if (!latest) {
+            // Objects first seen after t are left out, so this only holds at time t.
+            res.validUntil(t.plusNanos(1));
+        }
+        if (latest && lhs.fingerprint.equals(rhs.fingerprint)) {
+            // Same live objects: every object is live in the other repository.
+            return res;
+        }
+
+        IntStream candidates;
+        if (latest && shared) {
+            var missing = (BitSet) lhs.live.clone();
+            missing.andNot(rhs.present);
+            rhs.disposedBefore(Instant.MAX)
+                    .map(slot -> rhs.ids[slot])
+                    .filter(lhs.live::get)
+                    .forEach(missing::set);
+            candidates = missing.stream().map(lhs::slotOf);
+        } else {
+            candidates = lhs.firstSeenBefore(t).filter(slot -> lhs.objects.disposedAt(slot).isEmpty());
+        }
+
+        candidates.forEach(slot -> {
+            var x = lhs.objects.get(slot);
+            var type = lhs.objects.type(slot);
+            if (latest && lhs.fingerprint.sameObjects(rhs.fingerprint, type)) {
+                return;
+            }
+            // With a shared intern table, the candidates are exact and the object is found by id.
+            if (latest && !shared && lhs.publicationPoints.sameObjects(rhs.publicationPoints, PublicationPoints.of(x.entry().getUri()))) {
+                return;
+            }
+            var y = shared ? rhs.objectWithId(lhs.ids[slot]) : rhs.objects.get(x.key());
+            var since = missingSince(x, y, t);
+            if (since != null) {
+                res.add(x.entry(), type, since);
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Same as @difference, but the objects are only looked for while the stream
+     * is consumed. Nothing is collected: skipping into the stream and stopping
+     * early do not depend on the number of missing objects.
+     * <p>
+     * This walks the live objects of the type first seen before or at time
+     * <i>t</i> in the current snapshot, in order of first-seen time: the order
+     * is stable until this repository is updated. Each object is looked up by
+     * key in the current snapshot of the other repository, so the snapshots are
+     * not pinned and a stream that is not consumed to the end holds no
+     * references to interned objects.
+     */
+    public Stream<RepositoryEntry> streamDifference(RepositoryTracker other, Instant t, Duration threshold, RepositoryObjectType objectType) {
+        var lhs = snapshot.get();
+        var rhs = other.snapshot.get();
+        var latest = !t.isBefore(lhs.updatedAt) && !t.isBefore(rhs.updatedAt);
+        if (latest && lhs.fingerprint.sameObjects(rhs.fingerprint, objectType)) {
+            return Stream.empty();
+        }
+
+        var cutoff = t.minus(threshold);
+        return lhs.firstSeenBefore(t)
+                .filter(slot -> lhs.objects.type(slot) == objectType && lhs.objects.disposedAt(slot).isEmpty())
+                .mapToObj(lhs.objects::get)
+                .filter(x -> !latest || !lhs.publicationPoints.sameObjects(rhs.publicationPoints, PublicationPoints.of(x.entry().getUri())))
+                .filter(x -> {
+                    var since = missingSince(x, rhs.objects.get(x.key()), t);
+                    return since != null && !since.isAfter(cutoff);
+                })
+                .map(TrackedObject::entry);
+    }
+
+    /**
+     * The current snapshot, pinned: its objects keep their ids until it is unpinned.
+     */
+    private TrackerSnapshot pin() {
+        while (true) {
+            var current = snapshot.get();
+            // A snapshot is only released after it is replaced, so this retries on the next one.
+            if (current.pin()) {
+                return current;
+            }
+        }
+    }
+
+    private void unpin(TrackerSnapshot pinned) {
+        if (pinned.unpin()) {
+            interner.releaseAll(pinned.objects, pinned.ids);
+        }
+    }
+
+    /**
+     * The publication points with different live objects in the other repository,
+     * as of the last update of both. Only compares fingerprints, not objects.
+     */
+    public List<PublicationPointDifference> publicationPointDifferences(RepositoryTracker other) {
+        var lhs = snapshot.get();
+        var rhs = other.snapshot.get();
+        if (lhs.fingerprint.all() == rhs.fingerprint.all()) {
+            return List.of();
+        }
+        return lhs.publicationPoints.differences(rhs.publicationPoints);
+    }
+
+    /**
+     * Time since when object <code>x</code> of one repository, first seen before
+     * or at time <i>t</i>, is missing from another repository at time <i>t</i>.
+     * <code>y</code> is the object with the same key in the other repository, if
+     * any. Returns <code>null</code> when the object is not missing.
+     */
+    static Instant missingSince(TrackedObject x, TrackedObject y, Instant t) {
+        if (x.disposedAt.isPresent()) {
+            return null;
+        }
+        if (y == null || y.firstSeen.isAfter(t)) {
+            return x.firstSeen;
+        }
+        if (y.disposedAt.isEmpty()) {
+            return null;
+        }
+        var disposedAt = y.disposedAt.get();
+        return disposedAt.isAfter(x.firstSeen) ? disposedAt : x.firstSeen;
+    }
+
+    TrackerSnapshot snapshot() {
+        return snapshot.get();
     }
 
     /**
@@ -184,9 +591,9 @@ public class RepositoryTracker {
      *
      * Presence of an object is defined as first-seen before (or at) time <i>t</i> and
      * not disposed or disposed after time <i>t</i>.
-`     */
+     */
     public View view(Instant t) {
-        return new View(objects.get(), Predicates.firstSeenBefore(t).and(Predicates.notDisposedAt(t)));
+        return new View(snapshot.get(), t);
     }
 
     /**
@@ -196,12 +603,52 @@ public class RepositoryTracker {
      * as the object data.
      */
     public Set<TrackedObject> inspect(String uri) {
-        return objects.get().values().stream()
+        return snapshot.get().objects.stream()
                 .filter(x -> Objects.equals(uri, x.entry.getUri()))
                 .collect(toSet());
     }
 
-    private static Instant firstSeenAt(Map<TrackedObject.Key, TrackedObject> objects, byte[] sha256, String uri, Instant now) {
+    /**
+     * The tracked object with the given key as of the last update, also when
+     * it is disposed.
+     */
+    public Optional<TrackedObject> trackedObject(TrackedObject.Key key) {
+        return Optional.ofNullable(snapshot.get().objects.get(key));
+    }
+
+    /**
+     * The objects first seen after time <i>t</i> as of the last update, also
+     * when they are disposed since, in order of first-seen time.
+     */
+    public Stream<TrackedObject> firstSeenAfter(Instant t) {
+        var current = snapshot.get();
+        return current.firstSeenAfter(t).mapToObj(current.objects::get);
+    }
+
+    /**
+     * Object counts as of the last update.
+     */
+    public Counts counts() {
+        return snapshot.get().counts;
+    }
+
+    /**
+     * Fingerprint of the live objects as of the last update.
+     */
+    public Fingerprint fingerprint() {
+        return snapshot.get().fingerprint;
+    }
+
+    /**
+     * Memory used by the objects as of the last update.
+     */
+    public StorageSize storageSize() {
+        var current = snapshot.get();
+        var size = current.objects.storageSize();
+        return new StorageSize(size.storage(), size.recordBytes(), size.uriBytes(), size.indexBytes() + current.indexBytes());
+    }
+
+    private static Instant firstSeenAt(ObjectStore objects, byte[] sha256, String uri, Instant now) {
         var previous = objects.get(TrackedObject.key(sha256, uri));
         return previous != null ? previous.firstSeen() : now;
     }
@@ -214,16 +661,16 @@ public class RepositoryTracker {
      * are not brought back.
      */
     public record View(
-            Map<TrackedObject.Key, TrackedObject> objects,
-            Predicate<TrackedObject> filter
+            TrackerSnapshot snapshot,
+            Instant t
     ) {
         /**
          * Get the repository entry with the given hash, or nothing if the repository
          * does not have such object.
          */
         public Optional<RepositoryEntry> getObject(byte[] sha256, String uri) {
-            return Optional.ofNullable(objects.get(TrackedObject.key(sha256, uri)))
-                    .filter(filter)
+            return Optional.ofNullable(snapshot.objects.get(TrackedObject.key(sha256, uri)))
+                    .filter(present())
                     .map(TrackedObject::entry);
         }
 
@@ -244,21 +691,72 @@ public class RepositoryTracker {
          * expiration are considered open-ended (i.e. never to expire).
          */
         public Set<RepositoryEntry> expiration(Instant t) {
-            return entries()
-                    .filter(x -> x.expiration().map(expiration -> expiration.isBefore(t)).orElse(false))
-                    .collect(toSet());
+            return expiringBefore(t).collect(toSet());
+        }
+
+        /**
+         * Same as @expiration, in order of expiration (then creation, uri and hash).
+         */
+        public Stream<RepositoryEntry> expiringBefore(Instant t) {
+            return snapshot.expiringBefore(t)
+                    .filter(this::isPresent)
+                    .mapToObj(slot -> snapshot.objects.get(slot).entry());
         }
 
+        /**
+         * At or after the last update this is the maintained live count. Before it,
+         * objects disposed before or at time <i>t</i> were all first seen before
+         * or at time <i>t</i>, so the size follows from the index positions.
+         */
         public long size() {
-            return entries().count();
+            if (isLatest()) {
+                return snapshot.counts.live();
+            }
+            return snapshot.countFirstSeenBefore(t) - snapshot.countDisposedBefore(t);
+        }
+
+        /**
+         * Number of objects per object type. Types without objects are absent.
+         */
+        public Map<RepositoryObjectType, Long> sizeByType() {
+            if (isLatest()) {
+                return snapshot.counts.liveByType();
+            }
+            return stream().collect(groupingBy(TrackedObject::getObjectType, () -> new EnumMap<>(RepositoryObjectType.class), counting()));
+        }
+
+        private boolean isLatest() {
+            return !t.isBefore(snapshot.updatedAt);
         }
 
         public Stream<RepositoryEntry> entries() {
             return stream().map(TrackedObject::entry);
         }
 
+        /**
+         * Visit the entries with the interned id of their object. The id of an
+         * object is stable while any tracker holds it, but it is re-used for
+         * another object after that.
+         */
+        public void forEachEntryWithId(ObjIntConsumer<RepositoryEntry> f) {
+            snapshot.firstSeenBefore(t)
+                    .filter(slot -> snapshot.objects.disposedAt(slot).map(disposedAt -> disposedAt.isAfter(t)).orElse(true))
+                    .forEach(slot -> f.accept(snapshot.objects.get(slot).entry(), snapshot.ids[slot]));
+        }
+
         public Stream<TrackedObject> stream() {
-            return objects.values().stream().filter(filter);
+            return snapshot.firstSeenBefore(t)
+                    .filter(slot -> snapshot.objects.disposedAt(slot).map(disposedAt -> disposedAt.isAfter(t)).orElse(true))
+                    .mapToObj(snapshot.objects::get);
+        }
+
+        private boolean isPresent(int slot) {
+            return !snapshot.objects.firstSeen(slot).isAfter(t)
+                    && snapshot.objects.disposedAt(slot).map(disposedAt -> disposedAt.isAfter(t)).orElse(true);
+        }
+
+        private Predicate<TrackedObject> present() {
+            return Predicates.firstSeenBefore(t).and(Predicates.notDisposedAt(t));
         }
     }
     /**
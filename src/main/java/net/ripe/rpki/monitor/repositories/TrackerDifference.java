@@ -0,0 +1,186 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.base.Preconditions;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The (non-commutative) difference between two repositories at time <i>t</i>,
+ * for multiple thresholds and by object type.
+ * <p>
+ * An object is missing for all thresholds up to its age: the time since it was
+ * first seen in this repository or disposed from the other repository. Every
+ * missing object is binned once, by its object type and the largest threshold
+ * it exceeds. The difference for a threshold is the union of the bins of that
+ * threshold and the larger thresholds.
+ * <p>
+ * A difference that only counts keeps a counter per bin instead of the entries.
+ * <p>
+ * The difference stays the same until either repository is updated (its
+ * version changes) or a missing object reaches the next threshold.
+ */
+public final class TrackerDifference {
+    private final Instant t;
+    // Versions of the repositories this difference was calculated from.
+    private final long version;
+    private final long otherVersion;
+    // First time at which an object moves to another threshold.
+    private Instant validUntil = Instant.MAX;
+    // Ascending thresholds and the matching (descending) cut-off times.
+    private final List<Duration> thresholds;
+    private final Instant[] cutoffs;
+    private final Map<RepositoryObjectType, long[]> counts = new EnumMap<>(RepositoryObjectType.class);
+    // Null when only counting.
+    private final Map<RepositoryObjectType, List<List<RepositoryEntry>>> bins;
+
+    TrackerDifference(Instant t, Collection<Duration> thresholds, boolean withEntries, long version, long otherVersion) {
+        this.t = t;
+        this.version = version;
+        this.otherVersion = otherVersion;
+        this.thresholds = thresholds.stream().distinct().sorted().toList();
+        this.cutoffs = this.thresholds.stream().map(t::minus).toArray(Instant[]::new);
+        this.bins = withEntries ? new EnumMap<>(RepositoryObjectType.class) : null;
+    }
+
+    /**
+     * Add an object that is missing since the given time. Objects missing for
+     * less than the smallest threshold are ignored.
+     */
+    void add(RepositoryEntry entry, Instant since) {
+        add(entry, RepositoryObjectType.parse(entry.getUri()), since);
+    }
+
+    void add(RepositoryEntry entry, RepositoryObjectType type, Instant since) {
+        var bin = binSince(since);
+        if (bin < 0) {
+            return;
+        }
+        counts.computeIfAbsent(type, k -> new long[cutoffs.length])[bin]++;
+        if (bins != null) {
+            bins.computeIfAbsent(type, k -> newBins())
+                    .get(bin)
+                    .add(entry);
+        }
+    }
+
+    /**
+     * Add a number of objects of the given type that are missing since the
+     * given time, to a difference that only counts.
+     */
+    void add(RepositoryObjectType type, Instant since, long count) {
+        Preconditions.checkState(bins == null, "Difference keeps the missing objects, add them one by one");
+        var bin = binSince(since);
+        if (bin >= 0) {
+            counts.computeIfAbsent(type, k -> new long[cutoffs.length])[bin] += count;
+        }
+    }
+
+    /**
+     * The bin of an object missing since the given time: the largest threshold
+     * it exceeds, or -1 when it is missing for less than the smallest threshold.
+     */
+    private int binSince(Instant since) {
+        int exceeded = 0;
+        while (exceeded < cutoffs.length && !since.isAfter(cutoffs[exceeded])) {
+            exceeded++;
+        }
+        if (exceeded < cutoffs.length) {
+            validUntil(since.plus(thresholds.get(exceeded)));
+        }
+        return exceeded - 1;
+    }
+
+    void validUntil(Instant until) {
+        if (until.isBefore(validUntil)) {
+            validUntil = until;
+        }
+    }
+
+    /**
+     * Whether this is the difference of the repositories at time <i>now</i>:
+     * neither repository was updated and no object moved to another threshold.
+     */
+    public boolean isCurrent(RepositoryTracker tracker, RepositoryTracker other, Instant now) {
+        return version == tracker.lastUpdate().version()
+                && otherVersion == other.lastUpdate().version()
+                && !now.isBefore(t)
+                && now.isBefore(validUntil);
+    }
+
+    public List<Duration> thresholds() {
+        return thresholds;
+    }
+
+    /**
+     * The objects missing from the other repository at this threshold.
+     */
+    public Set<RepositoryEntry> entries(Duration threshold) {
+        checkEntries();
+        var res = new HashSet<RepositoryEntry>();
+        var from = binOf(threshold);
+        bins.values().forEach(typeBins -> typeBins.subList(from, typeBins.size()).forEach(res::addAll));
+        return res;
+    }
+
+    /**
+     * The objects of the given type missing from the other repository at this threshold.
+     */
+    public Set<RepositoryEntry> entries(Duration threshold, RepositoryObjectType type) {
+        checkEntries();
+        var res = new HashSet<RepositoryEntry>();
+        var from = binOf(threshold);
+        Optional.ofNullable(bins.get(type)).ifPresent(typeBins -> typeBins.subList(from, typeBins.size()).forEach(res::addAll));
+        return res;
+    }
+
+    /**
+     * Same as {@link #entries(Duration, RepositoryObjectType)}, but streams the
+     * entries from the bins instead of copying them into a set.
+     */
+    public Stream<RepositoryEntry> stream(Duration threshold, RepositoryObjectType type) {
+        checkEntries();
+        var from = binOf(threshold);
+        return Optional.ofNullable(bins.get(type))
+                .stream()
+                .flatMap(typeBins -> typeBins.subList(from, typeBins.size()).stream())
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Number of objects of the given type missing from the other repository at this threshold.
+     */
+    public long count(Duration threshold, RepositoryObjectType type) {
+        var from = binOf(threshold);
+        var typeCounts = counts.get(type);
+        if (typeCounts == null) {
+            return 0;
+        }
+        long res = 0;
+        for (int bin = from; bin < typeCounts.length; bin++) {
+            res += typeCounts[bin];
+        }
+        return res;
+    }
+
+    private void checkEntries() {
+        Preconditions.checkState(bins != null, "Difference only counts the missing objects");
+    }
+
+    private int binOf(Duration threshold) {
+        var bin = thresholds.indexOf(threshold);
+        Preconditions.checkArgument(bin >= 0, "Difference is not calculated for threshold %s", threshold);
+        return bin;
+    }
+
+    private List<List<RepositoryEntry>> newBins() {
+        var res = new ArrayList<List<RepositoryEntry>>(thresholds.size());
+        for (int i = 0; i < thresholds.size(); i++) {
+            res.add(new ArrayList<>());
+        }
+        return res;
+    }
+}
@@ -0,0 +1,315 @@
+package net.ripe.rpki.monitor.repositories;
+
+import net.ripe.rpki.monitor.expiration.RepoObject;
+import net.ripe.rpki.monitor.util.HeapSize;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * The state of a {@link RepositoryTracker} after an update: the tracked objects
+ * and indexes on them.
+ * <p>
+ * Objects are ordered by the time they were first seen and by the time they
+ * were disposed. Only objects that changed recently are within the windows of
+ * the difference thresholds. With these indexes those objects are found with a
+ * range scan instead of evaluating a predicate on every object.
+ * <p>
+ * Objects with an expiration are also ordered the same way as {@link RepoObject}s,
+ * for the about-to-expire queries.
+ * <p>
+ * Together, the snapshots of the trackers that share an {@link ObjectInterner} form
+ * a presence matrix: a row per tracker with a bit per interned object id. The ids
+ * are dense (the lowest free id is re-used), so plain bitsets are compact enough.
+ * <p>
+ * The snapshot holds a reference to each of its objects in the intern table.
+ * Those are released once the snapshot is replaced and no longer pinned: while
+ * a reader compares the ids of snapshots, the ids can not be re-used for other
+ * objects.
+ */
+final class TrackerSnapshot {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Number of update deltas kept, for differences that catch up with more than one update.
+    static final int RECENT_DELTAS = 8;
+
+    final ObjectStore objects;
+    // Interned id of the object in each slot.
+    final int[] ids;
+    // Slot of each interned id, -1 for objects not in this snapshot.
+    private final int[] slotsById;
+    // Ids of the non-disposed objects and of all objects, respectively.
+    final BitSet live;
+    final BitSet present;
+    // Time of the update that produced this snapshot.
+    final Instant updatedAt;
+    final RepositoryTracker.Counts counts;
+    final RepositoryTracker.Fingerprint fingerprint;
+    final PublicationPoints publicationPoints;
+    // Changes since the previous snapshot of the tracker.
+    final RepositoryTracker.UpdateDelta delta;
+    // The deltas of the last updates, by version and ending with the delta of this snapshot.
+    private final List<RepositoryTracker.UpdateDelta> recentDeltas;
+
+    // Pins of this snapshot: one of the tracker while it is current, and one per reader of the ids.
+    private final AtomicInteger pins = new AtomicInteger(1);
+
+    // Slots of all objects ordered by first-seen time.
+    private final int[] byFirstSeen;
+    // Slots of the disposed objects ordered by disposal time.
+    private final int[] byDisposedAt;
+    // Slots of the objects with an expiration ordered by expiration, creation, uri and hash.
+    private final int[] byExpiration;
+
+    TrackerSnapshot(ObjectStore objects, int[] ids, RepositoryTracker.Counts counts, RepositoryTracker.Fingerprint fingerprint, PublicationPoints publicationPoints, List<RepositoryTracker.UpdateDelta> recentDeltas) {
+        this.objects = objects;
+        this.ids = ids;
+        this.recentDeltas = recentDeltas;
+        this.delta = recentDeltas.getLast();
+        this.updatedAt = delta.t();
+        this.counts = counts;
+        this.fingerprint = fingerprint;
+        this.publicationPoints = publicationPoints;
+
+        this.slotsById = new int[Arrays.stream(ids).max().orElse(-1) + 1];
+        Arrays.fill(slotsById, -1);
+        this.live = new BitSet(slotsById.length);
+        this.present = new BitSet(slotsById.length);
+        for (int slot = 0; slot < ids.length; slot++) {
+            slotsById[ids[slot]] = slot;
+            present.set(ids[slot]);
+            if (objects.disposedAt(slot).isEmpty()) {
+                live.set(ids[slot]);
+            }
+        }
+        this.byFirstSeen = sortedSlots(objects, slot -> Optional.of(objects.firstSeen(slot)), Comparator.comparing(objects::firstSeen), false);
+        this.byDisposedAt = sortedSlots(objects, objects::disposedAt, Comparator.comparing(slot -> objects.disposedAt(slot).orElseThrow()), false);
+        this.byExpiration = sortedSlots(objects, objects::expiration, expirationOrder(objects), true);
+    }
+
+    /**
+     * The recent deltas followed by the given delta of the next update.
+     */
+    List<RepositoryTracker.UpdateDelta> recentDeltasWith(RepositoryTracker.UpdateDelta next) {
+        var res = new ArrayList<RepositoryTracker.UpdateDelta>(RECENT_DELTAS);
+        res.addAll(recentDeltas.subList(Math.max(0, recentDeltas.size() - RECENT_DELTAS + 1), recentDeltas.size()));
+        res.add(next);
+        return List.copyOf(res);
+    }
+
+    /**
+     * The deltas of the updates after the given version, by version. Empty when
+     * not all of them are kept.
+     */
+    Optional<List<RepositoryTracker.UpdateDelta>> deltasAfter(long version) {
+        var first = recentDeltas.getFirst().version();
+        if (version >= delta.version()) {
+            return Optional.of(List.of());
+        }
+        if (version + 1 < first) {
+            return Optional.empty();
+        }
+        return Optional.of(recentDeltas.subList((int) (version + 1 - first), recentDeltas.size()));
+    }
+
+    /**
+     * Pin this snapshot, unless it was released already.
+     */
+    boolean pin() {
+        int current;
+        do {
+            current = pins.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!pins.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Remove a pin. Returns whether that was the last one: the references of
+     * the snapshot to its objects are to be released.
+     */
+    boolean unpin() {
+        return pins.decrementAndGet() == 0;
+    }
+
+    /**
+     * Size of the on-heap indexes of this snapshot: the ids, the orderings and
+     * the presence bitsets. The objects are in the store.
+     */
+    long indexBytes() {
+        return HeapSize.intArray(ids.length)
+                + HeapSize.intArray(slotsById.length)
+                + HeapSize.intArray(byFirstSeen.length)
+                + HeapSize.intArray(byDisposedAt.length)
+                + HeapSize.intArray(byExpiration.length)
+                + HeapSize.bitSet(live)
+                + HeapSize.bitSet(present);
+    }
+
+    /**
+     * Slot of the object with the given interned id.
+     */
+    int slotOf(int id) {
+        return slotsById[id];
+    }
+
+    /**
+     * The object with the given interned id, or null when it is not in this snapshot.
+     */
+    RepositoryTracker.TrackedObject objectWithId(int id) {
+        var slot = id < slotsById.length ? slotsById[id] : -1;
+        return slot < 0 ? null : objects.get(slot);
+    }
+
+    /**
+     * Slots of the objects first seen before or at time <i>t</i>, in order of first-seen time.
+     */
+    IntStream firstSeenBefore(Instant t) {
+        return IntStream.range(0, countFirstSeenBefore(t)).map(i -> byFirstSeen[i]);
+    }
+
+    /**
+     * Slots of the objects first seen after time <i>t</i>, in order of first-seen time.
+     */
+    IntStream firstSeenAfter(Instant t) {
+        return IntStream.range(countFirstSeenBefore(t), byFirstSeen.length).map(i -> byFirstSeen[i]);
+    }
+
+    /**
+     * Number of objects first seen before or at time <i>t</i>.
+     */
+    int countFirstSeenBefore(Instant t) {
+        return partitionPoint(byFirstSeen, slot -> !objects.firstSeen(slot).isAfter(t));
+    }
+
+    /**
+     * Slots of the objects disposed before or at time <i>t</i>, in order of disposal time.
+     */
+    IntStream disposedBefore(Instant t) {
+        return IntStream.range(0, countDisposedBefore(t)).map(i -> byDisposedAt[i]);
+    }
+
+    /**
+     * Number of objects disposed before or at time <i>t</i>.
+     */
+    int countDisposedBefore(Instant t) {
+        return partitionPoint(byDisposedAt, slot -> !objects.disposedAt(slot).orElseThrow().isAfter(t));
+    }
+
+    /**
+     * Slots of the objects expiring before time <i>t</i>, in order of expiration.
+     */
+    IntStream expiringBefore(Instant t) {
+        return IntStream.range(0, partitionPoint(byExpiration, slot -> objects.expiration(slot).orElseThrow().isBefore(t)))
+                .map(i -> byExpiration[i]);
+    }
+
+    /**
+     * Binary search for the first position in <code>order</code> that does not
+     * match <code>before</code>. The predicate must hold for a prefix of the order.
+     */
+    private static int partitionPoint(int[] order, IntPredicate before) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (before.test(order[mid])) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Comparator<Integer> expirationOrder(ObjectStore objects) {
+        // Only objects with the same expiration are materialised to compare the rest.
+        return RepoObject.ordering(
+                slot -> objects.expiration(slot).orElseThrow(),
+                slot -> objects.get(slot).entry().creation().orElse(Instant.MIN),
+                slot -> objects.get(slot).entry().getUri(),
+                slot -> objects.get(slot).entry().sha256()
+        );
+    }
+
+    /**
+     * Slots of the objects that have a time, ordered by that time.
+     * <p>
+     * Every time is read once and the slots are sorted on primitive keys: the
+     * times are ranked, and (rank, slot) pairs packed into a <code>long</code>
+     * are sorted. Runs of slots with the same time are ordered by
+     * <code>ties</code> when <code>resolveTies</code> is set, or when the time
+     * is outside of the range of the keys.
+     */
+    private static int[] sortedSlots(ObjectStore objects, IntFunction<Optional<Instant>> time, Comparator<Integer> ties, boolean resolveTies) {
+        var slots = new int[objects.size()];
+        var keys = new long[objects.size()];
+        int n = 0;
+        for (int slot = 0; slot < objects.size(); slot++) {
+            var value = time.apply(slot);
+            if (value.isPresent()) {
+                slots[n] = slot;
+                keys[n] = timeKey(value.get());
+                n++;
+            }
+        }
+
+        var ranks = Arrays.copyOf(keys, n);
+        Arrays.sort(ranks);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || ranks[i] != ranks[i - 1]) {
+                ranks[distinct++] = ranks[i];
+            }
+        }
+        var packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((long) Arrays.binarySearch(ranks, 0, distinct, keys[i]) << 32) | slots[i];
+        }
+        Arrays.sort(packed);
+
+        var order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) packed[i];
+        }
+        // Resolve the ties on the rare runs that need it.
+        for (int start = 0, end; start < n; start = end) {
+            var rank = packed[start] >>> 32;
+            end = start + 1;
+            while (end < n && packed[end] >>> 32 == rank) {
+                end++;
+            }
+            var key = ranks[(int) rank];
+            if (end - start > 1 && (resolveTies || key == Long.MIN_VALUE || key == Long.MAX_VALUE)) {
+                var run = IntStream.range(start, end).map(i -> order[i]).boxed().sorted(ties).mapToInt(Integer::intValue).toArray();
+                System.arraycopy(run, 0, order, start, run.length);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Nanoseconds since the epoch, saturated for times more than ~292 years
+     * from the epoch. The keys of distinct times in range are distinct.
+     */
+    static long timeKey(Instant t) {
+        var seconds = t.getEpochSecond();
+        if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= Long.MIN_VALUE / NANOS_PER_SECOND) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * NANOS_PER_SECOND + t.getNano();
+    }
+}
@@ -0,0 +1,18 @@
+package net.ripe.rpki.monitor.repositories;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs the hooks of {@link RepositoriesState} after a tracker is updated.
+ */
+public interface UpdateHookDispatcher {
+    /**
+     * Run the hooks in order on the thread that updated the tracker.
+     */
+    UpdateHookDispatcher SYNCHRONOUS = (tracker, hooks) -> hooks.forEach(hook -> hook.f().accept(tracker));
+
+    record Hook(String name, Consumer<RepositoryTracker> f) {}
+
+    void dispatch(RepositoryTracker tracker, List<Hook> hooks);
+}
@@ -0,0 +1,80 @@
+package net.ripe.rpki.monitor.util;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Optional;
+
+/**
+ * Approximate retained heap sizes of common objects, assuming a 64-bit JVM
+ * with compressed class pointers and oops (12 byte object headers, 4 byte
+ * references, 8 byte alignment).
+ * <p>
+ * These are estimates to size the heap and spot growth: they ignore sharing
+ * between objects (e.g. interned strings) and JVM specific layouts.
+ */
+public final class HeapSize {
+    public static final long OBJECT_HEADER = 12;
+    public static final long ARRAY_HEADER = 16;
+    public static final long REFERENCE = 4;
+
+    /** An {@link Instant}: a long and an int. */
+    public static final long INSTANT = object(Long.BYTES + Integer.BYTES);
+    /** A <code>java.util.HashMap.Node</code>: hash, key, value and next. */
+    public static final long HASH_MAP_NODE = object(Integer.BYTES + 3 * REFERENCE);
+
+    private HeapSize() {
+    }
+
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /** An object with fields of the given total size. */
+    public static long object(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    public static long byteArray(long length) {
+        return align(ARRAY_HEADER + length);
+    }
+
+    public static long referenceArray(long length) {
+        return align(ARRAY_HEADER + length * REFERENCE);
+    }
+
+    public static long intArray(long length) {
+        return align(ARRAY_HEADER + length * Integer.BYTES);
+    }
+
+    public static long longArray(long length) {
+        return align(ARRAY_HEADER + length * Long.BYTES);
+    }
+
+    /** A {@link BitSet}: its words, the number of words in use and a flag. */
+    public static long bitSet(BitSet bits) {
+        return object(REFERENCE + Integer.BYTES + 1) + longArray(bits.size() / Long.SIZE);
+    }
+
+    /**
+     * A string of which all characters are latin-1, the common case for URIs
+     * and hashes.
+     */
+    public static long string(String value) {
+        // value, hash, coder and hashIsZero
+        return object(REFERENCE + Integer.BYTES + 2) + byteArray(value.length());
+    }
+
+    public static long optionalInstant(Optional<Instant> value) {
+        // Optional.empty() is a shared instance
+        return value.isPresent() ? object(REFERENCE) + INSTANT : 0;
+    }
+
+    /**
+     * The table and nodes of a <code>HashMap</code> with the given number of
+     * entries, excluding the keys and values.
+     */
+    public static long hashMap(long entries) {
+        var capacity = Long.highestOneBit(Math.max(1, (long) Math.ceil(entries / 0.75)) * 2 - 1);
+        return object(6 * Integer.BYTES) + referenceArray(capacity) + entries * HASH_MAP_NODE;
+    }
+}
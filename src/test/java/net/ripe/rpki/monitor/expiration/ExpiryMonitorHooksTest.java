@@ -0,0 +1,122 @@
+package net.ripe.rpki.monitor.expiration;
+
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.monitor.config.ExpiryMonitoringConfig;
+import net.ripe.rpki.monitor.repositories.RepositoryEntry;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpiryMonitorHooksTest {
+    private static final String TA_REGEX = "rsync://.*/ta/.*";
+    private static final String OFFLINE_REGEX = "rsync://rpki.example.org/repository/[^/]+";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.now());
+    private final ExpiryMonitorHooks subject = new ExpiryMonitorHooks(new ExpiryMonitoringConfig(List.of(
+            new ExpiryMonitoringConfig.Matcher(TA_REGEX, Duration.ofDays(30), Map.of()),
+            new ExpiryMonitoringConfig.Matcher(OFFLINE_REGEX, Duration.ofDays(21), Map.of()),
+            new ExpiryMonitoringConfig.Matcher("rsync://rpki.example.org/(repository|ta)/.*", Duration.ofDays(1), Map.of())
+    ), null), registry, now::get);
+
+    @Test
+    public void test_literal_prefix() {
+        assertThat(ExpiryMatchers.literalPrefix("rsync://.*/ta/.*")).isEqualTo("rsync://");
+        assertThat(ExpiryMatchers.literalPrefix("rsync://host/a[bc]")).isEqualTo("rsync://host/a");
+        assertThat(ExpiryMatchers.literalPrefix("rsync://host/ab?")).isEqualTo("rsync://host/a");
+        assertThat(ExpiryMatchers.literalPrefix("rsync://host/ab+")).isEqualTo("rsync://host/ab");
+        assertThat(ExpiryMatchers.literalPrefix("rsync://a|https://b")).isEmpty();
+        assertThat(ExpiryMatchers.literalPrefix("(?i)rsync://")).isEmpty();
+    }
+
+    @Test
+    public void test_classify_against_all_matchers() {
+        var matchers = new ExpiryMatchers(List.of(TA_REGEX, OFFLINE_REGEX, "rsync://rpki.example.org/(repository|ta)/.*", "rsync://rpki\\.example\\.org/ta/.*"));
+
+        assertThat(matchers.classify("rsync://rpki.example.org/ta/ta.cer")).containsExactly(0, 2, 3);
+        assertThat(matchers.classify("rsync://rpki.example.org/repository/ripe-ncc-ta.mft")).containsExactly(1, 2);
+        assertThat(matchers.classify("rsync://rpki.example.org/repository/DEFAULT/xyz.roa")).containsExactly(2);
+        assertThat(matchers.classify("https://rrdp.example.org/ta/ta.cer")).isEmpty();
+
+        // Cached by id, but only for the same uri
+        assertThat(matchers.matching(7, "rsync://rpki.example.org/ta/ta.cer")).containsExactly(0, 2, 3);
+        assertThat(matchers.matching(7, "rsync://rpki.example.org/ta/ta.cer")).containsExactly(0, 2, 3);
+        assertThat(matchers.matching(7, "https://rrdp.example.org/ta/ta.cer")).isEmpty();
+    }
+
+    @Test
+    public void test_track_counts_objects_by_matcher() {
+        var now = this.now.get();
+        var tracker = RepositoryTracker.empty("main", "rsync://rpki.example.org/", RepositoryTracker.Type.RSYNC, Duration.ZERO);
+        tracker.update(now, Stream.of(
+                entry("rsync://rpki.example.org/ta/ta.cer", Optional.of(now.plus(Duration.ofDays(60)))),
+                entry("rsync://rpki.example.org/repository/ripe-ncc-ta.mft", Optional.of(now.plus(Duration.ofDays(7)))),
+                entry("rsync://rpki.example.org/repository/ripe-ncc-ta.crl", Optional.empty()),
+                entry("rsync://rpki.example.org/repository/DEFAULT/xyz.roa", Optional.of(now.plus(Duration.ofHours(1))))
+        ));
+
+        subject.track(tracker);
+        // A second pass uses the cached classification
+        subject.track(tracker);
+
+        assertThat(gauge(TA_REGEX, "above")).isEqualTo(1);
+        assertThat(gauge(TA_REGEX, "below")).isZero();
+        assertThat(gauge(OFFLINE_REGEX, "above")).isZero();
+        assertThat(gauge(OFFLINE_REGEX, "below")).isEqualTo(1);
+        assertThat(gauge(OFFLINE_REGEX, "unknown")).isEqualTo(1);
+        assertThat(gauge("rsync://rpki.example.org/(repository|ta)/.*", "above")).isEqualTo(2);
+        assertThat(gauge("rsync://rpki.example.org/(repository|ta)/.*", "below")).isEqualTo(1);
+    }
+
+    @Test
+    public void test_objects_cross_the_threshold_without_updates() {
+        var t0 = now.get();
+        var tracker = RepositoryTracker.empty("main", "rsync://rpki.example.org/", RepositoryTracker.Type.RSYNC, Duration.ZERO);
+        tracker.update(t0, Stream.of(
+                entry("rsync://rpki.example.org/ta/ta.cer", Optional.of(t0.plus(Duration.ofDays(31)))),
+                entry("rsync://rpki.example.org/ta/other.cer", Optional.of(t0.plus(Duration.ofDays(45)))),
+                entry("rsync://rpki.example.org/ta/same.cer", Optional.of(t0.plus(Duration.ofDays(45))))
+        ));
+        subject.track(tracker);
+
+        assertThat(gauge(TA_REGEX, "above")).isEqualTo(3);
+        assertThat(gauge(TA_REGEX, "below")).isZero();
+
+        // Without another update the objects move below the threshold as time passes
+        now.set(t0.plus(Duration.ofDays(1)).plusSeconds(1));
+        assertThat(gauge(TA_REGEX, "above")).isEqualTo(2);
+        assertThat(gauge(TA_REGEX, "below")).isEqualTo(1);
+
+        now.set(t0.plus(Duration.ofDays(15)));
+        assertThat(gauge(TA_REGEX, "above")).isEqualTo(2);
+        now.set(t0.plus(Duration.ofDays(15)).plusSeconds(1));
+        assertThat(gauge(TA_REGEX, "above")).isZero();
+        assertThat(gauge(TA_REGEX, "below")).isEqualTo(3);
+    }
+
+    private double gauge(String regex, String comparison) {
+        return registry.get("rpkimonitoring.expiry.matcher")
+                .tag("regex", regex)
+                .tag("comparison", comparison)
+                .gauge()
+                .value();
+    }
+
+    private static RepositoryEntry entry(String uri, Optional<Instant> expiration) {
+        return RepositoryEntry.builder()
+                .uri(uri)
+                .sha256(Hashing.sha256().hashUnencodedChars(uri).asBytes())
+                .expiration(expiration)
+                .build();
+    }
+}
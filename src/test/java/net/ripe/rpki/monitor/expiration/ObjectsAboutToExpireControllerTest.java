@@ -0,0 +1,52 @@
+package net.ripe.rpki.monitor.expiration;
+
+import com.google.common.hash.Hashing;
+import net.ripe.rpki.monitor.repositories.RepositoriesState;
+import net.ripe.rpki.monitor.repositories.RepositoryEntry;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static net.ripe.rpki.monitor.expiration.AbstractObjectsAboutToExpireCollectorTest.newAppConfig;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ObjectsAboutToExpireControllerTest {
+    private final Instant now = Instant.now();
+    private final RepositoriesState repositories = RepositoriesState.init(List.of(
+            Triple.of("rsync", "rsync://rpki.ripe.net", RepositoryTracker.Type.RSYNC)
+    ), Duration.ZERO);
+    private final ObjectsAboutToExpireController subject = new ObjectsAboutToExpireController(repositories, newAppConfig());
+
+    @Test
+    public void test_page_through_objects() {
+        var objects = IntStream.range(0, 3)
+                .mapToObj(i -> new RepositoryEntry(
+                        "rsync://example.com/repository/DEFAULT/" + i + ".cer",
+                        Hashing.sha256().hashInt(i).asBytes(),
+                        Optional.of(now),
+                        Optional.of(now.plusSeconds(60 * (i + 1)))
+                ))
+                .toList();
+        repositories.updateByTag("rsync", now, objects.stream());
+
+        assertThat(subject.rsyncSummary(2, 0, Long.MAX_VALUE)).isEqualTo(objects);
+        assertThat(subject.rsyncSummary(2, 1, 1)).isEqualTo(objects.subList(1, 2));
+    }
+
+    @Test
+    public void test_reject_invalid_paging() {
+        assertThatThrownBy(() -> subject.rsyncSummary(2, -1, 10))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> subject.rsyncSummary(2, 0, 0))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+}
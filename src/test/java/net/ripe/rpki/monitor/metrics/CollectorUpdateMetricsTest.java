@@ -0,0 +1,33 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CollectorUpdateMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CollectorUpdateMetrics subject = new CollectorUpdateMetrics(registry);
+
+    @Test
+    void test_parse_metrics_by_type_and_status() {
+        subject.trackParse(RepositoryObjectType.Manifest, "ACCEPTED", TimeUnit.MILLISECONDS.toNanos(20), 2_000_000);
+        subject.trackParse(RepositoryObjectType.Manifest, "ACCEPTED", TimeUnit.MILLISECONDS.toNanos(1), 2_000);
+        subject.trackParse(RepositoryObjectType.Roa, "REJECTED", TimeUnit.MICROSECONDS.toNanos(300), 1_500);
+
+        var manifestDuration = registry.get(CollectorUpdateMetrics.COLLECTOR_PARSE_DURATION_METRIC).tag("type", "manifest").tag("status", "accepted").timer();
+        assertThat(manifestDuration.count()).isEqualTo(2);
+        assertThat(manifestDuration.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(21);
+        assertThat(manifestDuration.max(TimeUnit.MILLISECONDS)).isEqualTo(20);
+
+        var manifestSize = registry.get(CollectorUpdateMetrics.COLLECTOR_PARSE_SIZE_METRIC).tag("type", "manifest").summary();
+        assertThat(manifestSize.max()).isEqualTo(2_000_000);
+        assertThat(manifestSize.totalAmount()).isEqualTo(2_002_000);
+
+        assertThat(registry.get(CollectorUpdateMetrics.COLLECTOR_PARSE_SIZE_METRIC).tag("type", "roa").tag("status", "rejected").summary().count()).isOne();
+        assertThat(registry.find(CollectorUpdateMetrics.COLLECTOR_PARSE_DURATION_METRIC).tag("type", "crl").timer()).isNull();
+    }
+}
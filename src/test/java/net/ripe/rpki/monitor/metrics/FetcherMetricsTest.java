@@ -58,6 +58,7 @@ class FetcherMetricsTest {
         var rrdp3 = subject.rrdp(new RrdpConfig.RrdpRepositoryConfig("rrdp3", "https://rrdp3.example.org", null, Map.of("rrdp3.example.org", "rrdp3.cdn.example.org"), Duration.ZERO));
 
         rrdp1.success(1, 0);
+        rrdp1.retainedState(1024);
         rrdp2.failure();
         rrdp3.timeout();
 
@@ -65,6 +66,7 @@ class FetcherMetricsTest {
         assertThat(updatedCountMetricValue("https://rrdp1.example.org", "failed")).isZero();
         assertThat(updatedCountMetricValue("https://rrdp1.example.org", "timeout")).isZero();
         assertThat(rrdpSerialMetricValue.apply("https://rrdp1.example.org")).isOne();
+        assertThat(registry.get("rpkimonitoring.fetcher.rrdp.state.heap").tag("source", "rrdp1").gauge().value()).isEqualTo(1024);
 
         assertThat(updatedCountMetricValue("https://rrdp2.example.org@effectivehost.example.org", "success")).isZero();
         assertThat(updatedCountMetricValue("https://rrdp2.example.org@effectivehost.example.org", "failed")).isOne();
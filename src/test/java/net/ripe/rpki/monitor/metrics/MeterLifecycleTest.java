@@ -0,0 +1,89 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService.RepositoryDiffKey;
+import net.ripe.rpki.monitor.publishing.PublishedObjectsSummaryService.RepositoryKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MeterLifecycleTest {
+    private static final RepositoryKey LHS = new RepositoryKey("main", "https://rrdp.ripe.net/notification.xml");
+    private static final RepositoryKey RHS = new RepositoryKey("rsync", "rsync://rpki.ripe.net/");
+
+    private SimpleMeterRegistry registry;
+    private MeterLifecycle subject;
+
+    @BeforeEach
+    public void beforeEach() {
+        registry = new SimpleMeterRegistry();
+        subject = new MeterLifecycle(3, Set.of(3411L));
+        registry.config().meterFilter(subject);
+        subject.bindTo(registry);
+    }
+
+    @Test
+    public void test_caps_meters_per_name() {
+        for (int i = 0; i < 5; i++) {
+            Counter.builder("rpkimonitoring.test").tag("i", String.valueOf(i)).register(registry).increment();
+        }
+        // Registering an existing meter again is not denied
+        Counter.builder("rpkimonitoring.test").tag("i", "0").register(registry).increment();
+        // Only the meters of this application are capped
+        for (int i = 0; i < 5; i++) {
+            Counter.builder("jvm.test").tag("i", String.valueOf(i)).register(registry);
+        }
+
+        assertThat(registry.find("rpkimonitoring.test").counters()).hasSize(3);
+        assertThat(registry.get("rpkimonitoring.test").tag("i", "0").counter().count()).isEqualTo(2);
+        assertThat(registry.find("jvm.test").counters()).hasSize(5);
+        assertThat(registry.get(MeterLifecycle.METERS_DENIED).functionCounter().count()).isEqualTo(2);
+
+        // Removing a meter frees its place
+        registry.remove(registry.get("rpkimonitoring.test").tag("i", "1").counter());
+        assertThat(subject.meterCount("rpkimonitoring.test")).isEqualTo(2);
+        Counter.builder("rpkimonitoring.test").tag("i", "4").register(registry);
+        assertThat(registry.find("rpkimonitoring.test").counters()).hasSize(3);
+        assertThat(registry.get(MeterLifecycle.METERS).gauge().value()).isEqualTo(registry.getMeters().size());
+    }
+
+    @Test
+    public void test_only_publishes_diff_gauges_of_configured_thresholds() {
+        var metrics = new PublishedObjectMetrics(registry);
+        metrics.trackDiffSizes(Map.of(
+                new RepositoryDiffKey(LHS, RHS, RepositoryObjectType.Roa, Duration.ofSeconds(256)), 1L,
+                new RepositoryDiffKey(LHS, RHS, RepositoryObjectType.Roa, Duration.ofSeconds(3411)), 2L
+        ));
+
+        assertThat(registry.find(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).gauges())
+                .singleElement()
+                .satisfies(gauge -> {
+                    assertThat(gauge.getId().getTag("threshold")).isEqualTo("3411");
+                    assertThat(gauge.value()).isEqualTo(2);
+                });
+    }
+
+    @Test
+    public void test_removes_diff_gauges_of_keys_no_longer_reported() {
+        var metrics = new PublishedObjectMetrics(registry);
+        var roa = new RepositoryDiffKey(LHS, RHS, RepositoryObjectType.Roa, Duration.ofSeconds(3411));
+        var crl = new RepositoryDiffKey(LHS, RHS, RepositoryObjectType.Crl, Duration.ofSeconds(3411));
+        var other = new RepositoryDiffKey(RHS, LHS, RepositoryObjectType.Crl, Duration.ofSeconds(3411));
+
+        metrics.trackDiffSizes(Map.of(roa, 1L, crl, 2L, other, 3L));
+        assertThat(registry.find(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).gauges()).hasSize(3);
+
+        // The pair (LHS, RHS) is reported without Crl, the pair (RHS, LHS) is not reported
+        metrics.trackDiffSizes(Map.of(roa, 4L));
+        assertThat(registry.find(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).gauges())
+                .extracting(gauge -> gauge.getId().getTag("lhs") + "/" + gauge.getId().getTag("type") + "=" + gauge.value())
+                .containsExactlyInAnyOrder("main/roa=4.0", "rsync/crl=3.0");
+    }
+}
@@ -11,9 +11,7 @@ import org.junit.jupiter.api.Test;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -43,34 +41,12 @@ public class ObjectExpirationMetricsTest {
 
         subject.trackExpiration(REPO_URL, now, objects.stream().map(RepositoryEntry::from));
 
-        final var buckets = Arrays.asList(meterRegistry.get(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC)
-                .tag("url", REPO_URL)
-                .summary()
-                .takeSnapshot()
-                .histogramCounts());
-
-        var theCount = buckets.stream().filter(bucket -> (int)bucket.bucket() == Duration.ofHours(4).toSeconds());
-
         // Bucket durations are constants for the SLO
-        assertThat(buckets)
-                .filteredOn(bucket -> (int)bucket.bucket() == Duration.ofHours(1).toSeconds())
-                .first()
-                .matches(bucket -> bucket.count() == 1, "one object < 1hr");
-
-        assertThat(buckets)
-                .filteredOn(bucket -> (int)bucket.bucket() == Duration.ofHours(4).toSeconds())
-                .first()
-                .matches(bucket -> bucket.count() == 2, "two objects < 4 hrs");
-
-        assertThat(buckets)
-                .filteredOn(bucket -> (int)bucket.bucket() == Duration.ofHours(7).toSeconds())
-                .first()
-                .matches(bucket -> bucket.count() == 2, "two objects < 7 hours"); // two objects < 7 hours
-
-        assertThat(buckets)
-                .filteredOn(bucket -> bucket.bucket() == TimeUnit.HOURS.toSeconds(8))
-                .first()
-                .matches(bucket -> bucket.count() == 3, "three objects < 8 hours");
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, Duration.ofHours(1))).as("one object < 1hr").isEqualTo(1);
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, Duration.ofHours(4))).as("two objects < 4 hrs").isEqualTo(2);
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, Duration.ofHours(7))).as("two objects < 7 hours").isEqualTo(2);
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, Duration.ofHours(8))).as("three objects < 8 hours").isEqualTo(3);
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, "+Inf")).isEqualTo(4);
     }
 
     @Test
@@ -84,28 +60,45 @@ public class ObjectExpirationMetricsTest {
 
         subject.trackExpiration(REPO_URL, now, objects.stream().map(RepositoryEntry::from));
 
-        final var snapshot = meterRegistry.get(ObjectExpirationMetrics.COLLECTOR_CREATION_METRIC)
-                .tag("url", REPO_URL)
-                .summary()
-                .takeSnapshot();
-
-        assertThat(snapshot.count()).isEqualTo(3);
-        final var buckets = Arrays.asList(snapshot.histogramCounts());
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_CREATION_METRIC, "+Inf")).isEqualTo(3);
 
         // Bucket durations are constants for the SLO
-        assertThat(buckets)
-                .filteredOn(bucket -> (int)bucket.bucket() == Duration.ofHours(1).toSeconds())
-                .first()
-                .matches(bucket -> bucket.count() == 0); // one object < 1 hr
-
-        assertThat(buckets)
-                .filteredOn(bucket -> (int)bucket.bucket() == Duration.ofHours(4).toSeconds())
-                .first()
-                .matches(bucket -> bucket.count() == 1); // one object within 4 hrs.
-
-        assertThat(buckets)
-                .filteredOn(bucket -> (int)bucket.bucket() == Duration.ofHours(24).toSeconds())
-                .first()
-                .matches(bucket -> bucket.count() == 2); // two objects within 24hr
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_CREATION_METRIC, Duration.ofHours(1))).isEqualTo(0); // no object < 1 hr
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_CREATION_METRIC, Duration.ofHours(4))).isEqualTo(1); // one object within 4 hrs.
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_CREATION_METRIC, Duration.ofHours(24))).isEqualTo(2); // two objects within 24hr
+    }
+
+    @Test
+    public void itShouldDescribeTheLatestStateOfTheRepository() {
+        var now = Instant.now();
+        var objects = Set.of(
+                RepoObject.fictionalObjectValidAtInstant(now.plus(Duration.ofMinutes(45))),
+                RepoObject.fictionalObjectValidAtInstant(now.plus(Duration.ofHours(10)))
+        );
+
+        // Tracking the same repository again replaces the counts instead of adding up.
+        subject.trackExpiration(REPO_URL, now, objects.stream().map(RepositoryEntry::from));
+        subject.trackExpiration(REPO_URL, now, objects.stream().map(RepositoryEntry::from));
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, Duration.ofHours(1))).isEqualTo(1);
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, "+Inf")).isEqualTo(2);
+
+        // An hour later the first object has expired, it counts in the first bucket
+        subject.trackExpiration(REPO_URL, now.plus(Duration.ofHours(1)), objects.stream().map(RepositoryEntry::from));
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, Duration.ofMinutes(1))).isEqualTo(1);
+
+        subject.trackExpiration(REPO_URL, now, Set.<RepoObject>of().stream().map(RepositoryEntry::from));
+        assertThat(bucket(ObjectExpirationMetrics.COLLECTOR_EXPIRATION_METRIC, "+Inf")).isZero();
+    }
+
+    private double bucket(String metric, Duration le) {
+        return bucket(metric, Double.toString(le.toSeconds()));
+    }
+
+    private double bucket(String metric, String le) {
+        return meterRegistry.get(metric)
+                .tag("url", REPO_URL)
+                .tag("le", le)
+                .gauge()
+                .value();
     }
 }
@@ -0,0 +1,112 @@
+package net.ripe.rpki.monitor.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusOutputFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrometheusScrapeCacheTest {
+    private static final String TEXT = "text/plain;version=0.0.4;charset=utf-8";
+    private static final String OPEN_METRICS = "application/openmetrics-text;version=1.0.0;charset=utf-8";
+
+    private PrometheusMeterRegistry registry;
+    private PrometheusScrapeCache subject;
+
+    @BeforeEach
+    public void beforeEach() {
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        subject = new PrometheusScrapeCache(Optional.of(registry), registry);
+    }
+
+    @Test
+    public void test_serves_the_rendered_scrape() {
+        var counter = Counter.builder("rpkimonitoring.test").register(registry);
+        counter.increment();
+
+        var scrape = subject.get(TEXT).orElseThrow();
+        assertThat(new String(scrape.body(), StandardCharsets.UTF_8)).contains("rpkimonitoring_test_total 1.0");
+
+        // Scrapes are served from the rendered scrape until it is rendered again
+        counter.increment();
+        assertThat(subject.get(TEXT)).containsSame(scrape);
+
+        subject.refresh();
+        assertThat(new String(subject.get(TEXT).orElseThrow().body(), StandardCharsets.UTF_8)).contains("rpkimonitoring_test_total 2.0");
+
+        assertThat(registry.get(PrometheusScrapeCache.SCRAPE_RENDER_DURATION).timer().count()).isEqualTo(2);
+        assertThat(registry.get(PrometheusScrapeCache.SCRAPE_SIZE).tag("content-type", "text/plain").gauge().value())
+                .isEqualTo(subject.get(TEXT).orElseThrow().body().length);
+    }
+
+    @Test
+    public void test_renders_each_content_type() {
+        Counter.builder("rpkimonitoring.test").register(registry).increment();
+
+        var text = new String(subject.get(TEXT).orElseThrow().body(), StandardCharsets.UTF_8);
+        var openMetrics = new String(subject.get(OPEN_METRICS).orElseThrow().body(), StandardCharsets.UTF_8);
+        assertThat(text).doesNotContain("# EOF");
+        assertThat(openMetrics).contains("rpkimonitoring_test_total 1.0").endsWith("# EOF\n");
+
+        // Only the content types that were scraped are rendered again
+        subject.refresh();
+        assertThat(registry.get(PrometheusScrapeCache.SCRAPE_RENDER_DURATION).timer().count()).isEqualTo(4);
+        assertThat(registry.get(PrometheusScrapeCache.SCRAPE_SIZE).gauges()).hasSize(2);
+    }
+
+    @Test
+    public void test_refresh_after_update_is_rate_limited() {
+        var counter = Counter.builder("rpkimonitoring.test").register(registry);
+        counter.increment();
+        subject.get(TEXT);
+
+        // Rendered less than the interval ago
+        counter.increment();
+        subject.refreshIfOlderThan(PrometheusScrapeCache.MIN_REFRESH_INTERVAL);
+        assertThat(registry.get(PrometheusScrapeCache.SCRAPE_RENDER_DURATION).timer().count()).isOne();
+        assertThat(new String(subject.get(TEXT).orElseThrow().body(), StandardCharsets.UTF_8)).contains("rpkimonitoring_test_total 1.0");
+
+        // Every scrape is older than a negative age
+        subject.refreshIfOlderThan(Duration.ofSeconds(-1));
+        assertThat(registry.get(PrometheusScrapeCache.SCRAPE_RENDER_DURATION).timer().count()).isEqualTo(2);
+        assertThat(new String(subject.get(TEXT).orElseThrow().body(), StandardCharsets.UTF_8)).contains("rpkimonitoring_test_total 2.0");
+    }
+
+    @Test
+    public void test_actuator_endpoint() {
+        var endpoint = new CachedPrometheusScrapeEndpoint(registry.getPrometheusRegistry(), new Properties(), subject);
+        var counter = Counter.builder("rpkimonitoring.test").register(registry);
+        counter.increment();
+
+        var scrape = endpoint.scrape(PrometheusOutputFormat.CONTENT_TYPE_004, null).getBody();
+        counter.increment();
+        assertThat(endpoint.scrape(PrometheusOutputFormat.CONTENT_TYPE_004, null).getBody()).isSameAs(scrape);
+        assertThat(new String(endpoint.scrape(PrometheusOutputFormat.CONTENT_TYPE_OPENMETRICS_100, null).getBody(), StandardCharsets.UTF_8))
+                .contains("rpkimonitoring_test_total 2.0")
+                .endsWith("# EOF\n");
+
+        // Filtered scrapes are not cached
+        var filtered = endpoint.scrape(PrometheusOutputFormat.CONTENT_TYPE_004, Set.of("rpkimonitoring_test", "rpkimonitoring_test_total")).getBody();
+        counter.increment();
+        assertThat(new String(filtered, StandardCharsets.UTF_8)).contains("rpkimonitoring_test_total 2.0").doesNotContain(PrometheusScrapeCache.SCRAPE_SIZE.replace('.', '_'));
+        assertThat(new String(endpoint.scrape(PrometheusOutputFormat.CONTENT_TYPE_004, Set.of("rpkimonitoring_test", "rpkimonitoring_test_total")).getBody(), StandardCharsets.UTF_8))
+                .contains("rpkimonitoring_test_total 3.0");
+    }
+
+    @Test
+    public void test_without_prometheus_registry() {
+        var noPrometheus = new PrometheusScrapeCache(Optional.empty(), registry);
+
+        noPrometheus.refresh();
+        assertThat(noPrometheus.get(TEXT)).isEmpty();
+    }
+}
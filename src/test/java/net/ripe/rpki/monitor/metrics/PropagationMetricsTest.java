@@ -0,0 +1,85 @@
+package net.ripe.rpki.monitor.metrics;
+
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.monitor.repositories.RepositoryEntry;
+import net.ripe.rpki.monitor.repositories.RepositoryTracker;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PropagationMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PropagationMetrics subject = new PropagationMetrics(registry);
+
+    private final RepositoryTracker core = RepositoryTracker.empty("core", "https://ba-apps.ripe.net/certification/", RepositoryTracker.Type.CORE, Duration.ZERO);
+    private final RepositoryTracker rrdp = RepositoryTracker.empty("main", "https://rrdp.ripe.net/notification.xml", RepositoryTracker.Type.RRDP, Duration.ZERO);
+
+    @Test
+    public void test_delay_of_objects_added_after_the_first_update() {
+        var t0 = Instant.parse("2024-01-01T12:00:00Z");
+        var existing = entry("rsync://rpki.ripe.net/repository/DEFAULT/existing.roa", Optional.of(t0.minus(Duration.ofDays(1))));
+        var published = entry("rsync://rpki.ripe.net/repository/DEFAULT/published.roa", Optional.of(t0.plusSeconds(10)));
+        var seenByCore = entry("rsync://rpki.ripe.net/repository/DEFAULT/seen.roa", Optional.empty());
+        var notInCore = entry("rsync://rpki.ripe.net/repository/DEFAULT/other.roa", Optional.empty());
+
+        core.update(t0, Stream.of(existing));
+        rrdp.update(t0, Stream.of(existing));
+        subject.trackPropagation(core, rrdp);
+        // The objects of the first update are not measured
+        assertThat(registry.find(PropagationMetrics.PROPAGATION_DELAY).timer()).isNull();
+
+        core.update(t0.plusSeconds(30), Stream.of(existing, published, seenByCore));
+        rrdp.update(t0.plusSeconds(70), Stream.of(existing, withoutCreation(published), seenByCore, notInCore));
+        subject.trackPropagation(core, rrdp);
+
+        var delay = registry.get(PropagationMetrics.PROPAGATION_DELAY).tag("source", "main").timer();
+        assertThat(delay.count()).isEqualTo(2);
+        // 60s since published, 40s since core first saw the object without updatedAt
+        assertThat(delay.max(TimeUnit.SECONDS)).isEqualTo(60);
+        assertThat(delay.totalTime(TimeUnit.SECONDS)).isEqualTo(100);
+        assertThat(registry.get(PropagationMetrics.PROPAGATION_UNMATCHED).tag("source", "main").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void test_delay_of_objects_added_by_coalesced_updates() {
+        var t0 = Instant.parse("2024-01-01T12:00:00Z");
+        var existing = entry("rsync://rpki.ripe.net/repository/DEFAULT/existing.roa", Optional.of(t0.minus(Duration.ofDays(1))));
+        var first = entry("rsync://rpki.ripe.net/repository/DEFAULT/first.roa", Optional.of(t0.plusSeconds(10)));
+        var second = entry("rsync://rpki.ripe.net/repository/DEFAULT/second.roa", Optional.of(t0.plusSeconds(20)));
+
+        core.update(t0.plusSeconds(30), Stream.of(existing, first, second));
+        // The hook runs once for all updates of the repository
+        rrdp.update(t0, Stream.of(existing));
+        rrdp.update(t0.plusSeconds(40), Stream.of(existing, first));
+        rrdp.update(t0.plusSeconds(80), Stream.of(existing, second));
+        subject.trackPropagation(core, rrdp);
+
+        var delay = registry.get(PropagationMetrics.PROPAGATION_DELAY).tag("source", "main").timer();
+        assertThat(delay.count()).isEqualTo(2);
+        assertThat(delay.totalTime(TimeUnit.SECONDS)).isEqualTo(30 + 60);
+
+        // Objects are only measured once, also when they are re-published
+        rrdp.update(t0.plusSeconds(120), Stream.of(existing, first, second));
+        subject.trackPropagation(core, rrdp);
+        assertThat(delay.count()).isEqualTo(2);
+    }
+
+    private static RepositoryEntry entry(String uri, Optional<Instant> creation) {
+        return RepositoryEntry.builder()
+                .uri(uri)
+                .sha256(Hashing.sha256().hashUnencodedChars(uri).asBytes())
+                .creation(creation)
+                .build();
+    }
+
+    private static RepositoryEntry withoutCreation(RepositoryEntry entry) {
+        return new RepositoryEntry(entry.getUri(), entry.sha256(), Optional.empty(), Optional.empty());
+    }
+}
@@ -0,0 +1,117 @@
+package net.ripe.rpki.monitor.metrics;
+
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.monitor.config.AppConfig;
+import net.ripe.rpki.monitor.config.RrdpConfig;
+import net.ripe.rpki.monitor.expiration.fetchers.RrdpSnapshotClient;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RrdpSerialTimelineTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2024-01-01T12:00:00Z"));
+    private final RrdpSerialTimeline subject = new RrdpSerialTimeline(Optional.of("main"), registry, now::get);
+
+    private final RrdpConfig.RrdpRepositoryConfig main = new RrdpConfig.RrdpRepositoryConfig("main", "https://rrdp.example.org/notification.xml", null, Map.of(), Duration.ZERO);
+    private final RrdpConfig.RrdpRepositoryConfig cdn = new RrdpConfig.RrdpRepositoryConfig("cdn", "https://rrdp.example.org/notification.xml", null, Map.of("rrdp.example.org", "cdn.example.org"), Duration.ZERO);
+
+    private final UUID session = UUID.randomUUID();
+
+    @Test
+    public void test_skew_of_a_target_that_is_stuck() {
+        subject.observe(main, state(session, 10));
+        subject.observe(cdn, state(session, 10));
+        assertThat(serialLag()).isZero();
+        assertThat(secondsBehind()).isZero();
+
+        advance(60);
+        subject.observe(main, state(session, 11));
+        advance(60);
+        subject.observe(main, state(session, 12));
+        subject.observe(cdn, state(session, 10));
+
+        // Behind since main served serial 11
+        assertThat(serialLag()).isEqualTo(2);
+        assertThat(secondsBehind()).isEqualTo(60);
+
+        // Without further fetches the target keeps falling behind
+        advance(240);
+        assertThat(secondsBehind()).isEqualTo(300);
+
+        subject.observe(cdn, state(session, 12));
+        assertThat(serialLag()).isZero();
+        assertThat(secondsBehind()).isZero();
+
+        // Repeated observations of the same state are merged
+        assertThat(subject.timeline("main")).hasValueSatisfying(observations -> assertThat(observations).hasSize(3));
+        assertThat(subject.timeline("cdn")).hasValueSatisfying(observations -> {
+            assertThat(observations).hasSize(2);
+            assertThat(observations.get(0).observedAt()).isEqualTo(Instant.parse("2024-01-01T12:00:00Z"));
+            assertThat(observations.get(0).lastObservedAt()).isEqualTo(Instant.parse("2024-01-01T12:02:00Z"));
+        });
+        assertThat(registry.find(RrdpSerialTimeline.RRDP_SERIAL_LAG).tag("source", "main").gauge()).isNull();
+    }
+
+    @Test
+    public void test_skew_is_unknown_across_sessions() {
+        subject.observe(main, state(session, 10));
+        subject.observe(cdn, state(UUID.randomUUID(), 1));
+
+        assertThat(serialLag()).isNaN();
+        assertThat(secondsBehind()).isNaN();
+    }
+
+    @Test
+    public void test_timeline_is_bounded() {
+        for (int serial = 0; serial < RrdpSerialTimeline.MAX_OBSERVATIONS + 10; serial++) {
+            subject.observe(main, state(session, serial));
+        }
+
+        assertThat(subject.timeline("main")).hasValueSatisfying(observations -> {
+            assertThat(observations).hasSize(RrdpSerialTimeline.MAX_OBSERVATIONS);
+            assertThat(observations.get(0).serial()).isEqualTo(BigInteger.TEN);
+        });
+        assertThat(subject.timeline("cdn")).isEmpty();
+    }
+
+    @Test
+    public void test_without_rrdp_targets() {
+        var rrdpConfig = new RrdpConfig();
+        rrdpConfig.setTargets(List.of());
+        var config = new AppConfig();
+        config.setRrdpConfig(rrdpConfig);
+        var subject = new RrdpSerialTimeline(config, registry);
+
+        subject.observe(cdn, state(session, 10));
+        assertThat(subject.timeline("cdn")).isPresent();
+        assertThat(registry.find(RrdpSerialTimeline.RRDP_SERIAL_LAG).gauge()).isNull();
+        assertThat(registry.find(RrdpSerialTimeline.RRDP_SECONDS_BEHIND).gauge()).isNull();
+    }
+
+    private double serialLag() {
+        return registry.get(RrdpSerialTimeline.RRDP_SERIAL_LAG).tag("source", "cdn").gauge().value();
+    }
+
+    private double secondsBehind() {
+        return registry.get(RrdpSerialTimeline.RRDP_SECONDS_BEHIND).tag("source", "cdn").gauge().value();
+    }
+
+    private void advance(long seconds) {
+        now.updateAndGet(t -> t.plusSeconds(seconds));
+    }
+
+    private static RrdpSnapshotClient.RrdpSnapshotState state(UUID session, long serial) {
+        return new RrdpSnapshotClient.RrdpSnapshotState("https://rrdp.example.org/" + serial + "/snapshot.xml", session, "hash-" + serial, BigInteger.valueOf(serial), ImmutableMap.of(), 0);
+    }
+}
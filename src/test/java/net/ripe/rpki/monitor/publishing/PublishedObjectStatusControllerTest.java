@@ -1,14 +1,25 @@
 package net.ripe.rpki.monitor.publishing;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ripe.rpki.monitor.metrics.PublishedObjectMetrics;
 import net.ripe.rpki.monitor.repositories.RepositoriesState;
 import net.ripe.rpki.monitor.repositories.RepositoryEntry;
 import net.ripe.rpki.monitor.repositories.RepositoryTracker;
 import org.apache.commons.lang3.tuple.Triple;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -16,6 +27,7 @@ import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -36,7 +48,7 @@ class PublishedObjectStatusControllerTest {
     );
     private final Instant now = Instant.now();
 
-    private final PublishedObjectStatusController subject = new PublishedObjectStatusController(publishedObjectsSummary, repositories);
+    private final PublishedObjectStatusController subject = new PublishedObjectStatusController(publishedObjectsSummary, repositories, new ObjectMapper());
 
     // Tests mostly validate that value is directly returned.
     @SuppressWarnings("unchecked")
@@ -54,11 +66,98 @@ class PublishedObjectStatusControllerTest {
 
     @Test
     public void test_get_repository_diff() {
+        var subject = new PublishedObjectStatusController(new PublishedObjectsSummaryService(new PublishedObjectMetrics(new SimpleMeterRegistry())), repositories, new ObjectMapper());
         repositories.updateByTag("core", now, Stream.of(object));
         assertThat(subject.diff("core", "rsync", 0).size()).isOne();
         assertThat(subject.diff("core", "rsync", 60).size()).isZero();
     }
 
+    @Test
+    public void test_stream_published_object_diffs() throws Exception {
+        var objectMapper = new ObjectMapper();
+        var subject = new PublishedObjectStatusController(new PublishedObjectsSummaryService(new PublishedObjectMetrics(new SimpleMeterRegistry())), repositories, objectMapper);
+        var threshold = PublishedObjectsSummaryService.THRESHOLDS.get(0).getSeconds();
+        var objects = Stream.of("a.cer", "b.cer", "c.cer")
+                .map(name -> new RepositoryEntry("rsync://example.com/repository/DEFAULT/" + name, Hashing.sha256().hashUnencodedChars(name).asBytes(), Optional.empty(), Optional.empty()))
+                .toList();
+        repositories.updateByTag("core", now.minusSeconds(threshold), objects.stream());
+
+        // Two entries per page: the first page ends with a cursor into the first difference of core
+        var page = lines(subject.publishedObjectDiffsStream("", 2, Long.MAX_VALUE).getBody(), objectMapper);
+        var certificates = page.stream()
+                .filter(line -> line.path("lhs").asText().equals("core") && line.path("type").asText().equals("certificate") && line.path("threshold").asLong() == threshold)
+                .toList();
+        assertThat(certificates.size()).isOne();
+        assertThat(certificates.get(0).get("total").asLong()).isEqualTo(3);
+        assertThat(certificates.get(0).get("entries").size()).isEqualTo(2);
+        var cursor = page.get(page.size() - 1).get("cursor").asText();
+
+        var next = lines(subject.publishedObjectDiffsStream(cursor, 2, Long.MAX_VALUE).getBody(), objectMapper);
+        assertThat(next.get(0).get("offset").asLong()).isEqualTo(2);
+        assertThat(next.get(0).get("entries").get(0).get("uri").asText()).startsWith("rsync://example.com/repository/DEFAULT/");
+
+        // At most one entry per difference, with the total count
+        var limited = lines(subject.publishedObjectDiffsStream("", Long.MAX_VALUE, 1).getBody(), objectMapper);
+        assertThat(limited.stream().allMatch(line -> line.get("entries").size() <= 1)).isTrue();
+        assertThat(limited.stream().mapToLong(line -> line.get("total").asLong()).max().orElseThrow()).isEqualTo(3);
+        assertThat(limited.stream().noneMatch(line -> line.has("cursor"))).isTrue();
+    }
+
+    @Test
+    public void test_stream_stops_at_limit() throws Exception {
+        var objectMapper = new ObjectMapper();
+        var subject = new PublishedObjectStatusController(new PublishedObjectsSummaryService(new PublishedObjectMetrics(new SimpleMeterRegistry())), repositories, objectMapper);
+        var threshold = PublishedObjectsSummaryService.THRESHOLDS.get(0).getSeconds();
+        var objects = Stream.of("a.cer", "b.cer", "c.cer")
+                .map(name -> new RepositoryEntry("rsync://example.com/repository/DEFAULT/" + name, Hashing.sha256().hashUnencodedChars(name).asBytes(), Optional.empty(), Optional.empty()))
+                .toList();
+        repositories.updateByTag("core", now.minusSeconds(threshold), objects.stream());
+
+        // The limit is reached at the end of a difference: no more (empty) differences, only the cursor
+        var page = lines(subject.publishedObjectDiffsStream("", 3, Long.MAX_VALUE).getBody(), objectMapper);
+        assertThat(page.get(page.size() - 1).has("cursor")).isTrue();
+        assertThat(page.get(page.size() - 2).get("entries").size()).isEqualTo(3);
+
+        var rest = lines(subject.publishedObjectDiffsStream(page.get(page.size() - 1).get("cursor").asText(), Long.MAX_VALUE, Long.MAX_VALUE).getBody(), objectMapper);
+        assertThat(rest.stream().noneMatch(line -> line.has("cursor"))).isTrue();
+        assertThat(page.size() - 1 + rest.size()).isEqualTo(lines(subject.publishedObjectDiffsStream("", Long.MAX_VALUE, Long.MAX_VALUE).getBody(), objectMapper).size());
+    }
+
+    @Test
+    public void test_stream_rejects_bad_requests() {
+        for (Runnable request : List.<Runnable>of(
+                () -> subject.publishedObjectDiffsStream("1", Long.MAX_VALUE, Long.MAX_VALUE),
+                () -> subject.rrdpDiffStream("a.b", Long.MAX_VALUE, Long.MAX_VALUE),
+                () -> subject.rsyncDiffStream("-1.0", Long.MAX_VALUE, Long.MAX_VALUE),
+                () -> subject.publishedObjectDiffsStream("", 0, Long.MAX_VALUE),
+                () -> subject.publishedObjectDiffsStream("", Long.MAX_VALUE, -1)
+        )) {
+            assertThatThrownBy(request::run)
+                    .isInstanceOfSatisfying(ResponseStatusException.class, e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    private static List<JsonNode> lines(StreamingResponseBody body, ObjectMapper objectMapper) throws Exception {
+        var out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        var res = new ArrayList<JsonNode>();
+        for (var line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            res.add(objectMapper.readTree(line));
+        }
+        return res;
+    }
+
+    @Test
+    public void test_get_publication_point_diff() {
+        repositories.updateByTag("core", now, Stream.of(object));
+        assertThat(subject.publicationPointDiffs("core", "rsync")).isEqualTo(List.of(
+                new RepositoryTracker.PublicationPointDifference("rsync://example.com/repository/DEFAULT/", 1, 0)
+        ));
+
+        repositories.updateByTag("rsync", now, Stream.of(object));
+        assertThat(subject.publicationPointDiffs("core", "rsync")).isEqualTo(List.of());
+    }
+
     @Test
     public void test_get_repository_info() {
         repositories.updateByTag("rsync", now, Stream.of(object));
@@ -179,6 +179,153 @@ public class PublishedObjectsSummaryTest {
                 .allMatch(gauge -> gauge.value() == 0.0);
     }
 
+    @Test
+    public void itShouldMaintainADifferenceAcrossUpdates() {
+        var object = RepositoryEntry.builder()
+                .sha256(HashCode.fromString("f19e8fbc6d520c06f3424ddf6a53cda830fc8ef4ca7074aa43ad97a42f946d50").asBytes())
+                .uri("rsync://example.org/file.cer")
+                .build();
+        rrdp.update(now.minus(minThreshold), Stream.of(object));
+        subject.updatePublishedObjectsDiff(now.minus(minThreshold), rrdp, List.of(rsync));
+
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF)
+                .tags("lhs", "rrdp", "threshold", String.valueOf(minThreshold.getSeconds()), "type", "certificate").gauge().value())
+                .isEqualTo(0.0);
+
+        // The object is missing for longer than the threshold without any update
+        subject.refreshPublishedObjectsDiffCounters(now, List.of(rrdp, rsync));
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF)
+                .tags("lhs", "rrdp", "threshold", String.valueOf(minThreshold.getSeconds()), "type", "certificate").gauge().value())
+                .isEqualTo(1.0);
+
+        rsync.update(now, Stream.of(object));
+        subject.updatePublishedObjectsDiff(now, rsync, List.of(rrdp));
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF)
+                .tags("lhs", "rrdp").gauges())
+                .allMatch(gauge -> gauge.value() == 0.0);
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF)
+                .tags("lhs", "rsync").gauges())
+                .allMatch(gauge -> gauge.value() == 0.0);
+    }
+
+    @Test
+    public void itShouldOnlyRefreshTheDifferencesThatChanged() {
+        var object = RepositoryEntry.builder()
+                .sha256(HashCode.fromString("f19e8fbc6d520c06f3424ddf6a53cda830fc8ef4ca7074aa43ad97a42f946d50").asBytes())
+                .uri("rsync://example.org/file.cer")
+                .build();
+        rrdp.update(now, Stream.of(object));
+        subject.updatePublishedObjectsDiff(now, rrdp, List.of(rsync));
+        then(diffCalculations("rrdp", "rsync")).isOne();
+        then(diffCalculations("rsync", "rrdp")).isOne();
+
+        // Nothing changed
+        subject.refreshPublishedObjectsDiffCounters(now.plusSeconds(1), List.of(rrdp, rsync));
+        then(diffCalculations("rrdp", "rsync")).isOne();
+        then(diffCalculations("rsync", "rrdp")).isOne();
+
+        // The object reaches the threshold
+        subject.refreshPublishedObjectsDiffCounters(now.plus(minThreshold), List.of(rrdp, rsync));
+        then(diffCalculations("rrdp", "rsync")).isEqualTo(2);
+        then(diffCalculations("rsync", "rrdp")).isOne();
+
+        // The other repository is updated
+        rsync.update(now.plus(minThreshold), Stream.of(object));
+        subject.refreshPublishedObjectsDiffCounters(now.plus(minThreshold), List.of(rrdp, rsync));
+        then(diffCalculations("rrdp", "rsync")).isEqualTo(3);
+        then(diffCalculations("rsync", "rrdp")).isEqualTo(2);
+    }
+
+    private long diffCalculations(String lhs, String rhs) {
+        return meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF_DURATION).tags("lhs", lhs, "rhs", rhs).timer().count();
+    }
+
+    @Test
+    public void itShouldTimeTheDifferencesOfEachPair() {
+        rrdp.update(now, Stream.empty());
+        subject.updatePublishedObjectsDiff(now, rrdp, List.of(rsync, core));
+
+        for (var other : List.of("rsync", "core")) {
+            then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF_DURATION).tags("lhs", "rrdp", "rhs", other).timer().count()).isOne();
+            then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF_DURATION).tags("lhs", other, "rhs", "rrdp").timer().count()).isOne();
+        }
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).tags("lhs", "rrdp").gauges())
+                .hasSize(2 * RepositoryObjectType.values().length * PublishedObjectsSummaryService.THRESHOLDS.size());
+    }
+
+    @Test
+    public void itShouldKeepTheGaugesOfAllThresholdsForTheApi() {
+        rrdp.update(now, Stream.empty());
+        subject.updatePublishedObjectsDiff(now, rrdp, List.of(rsync));
+        var gauges = 2 * RepositoryObjectType.values().length * PublishedObjectsSummaryService.THRESHOLDS.size();
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).gauges()).hasSize(gauges);
+
+        subject.getDiff(now, List.of(rrdp), List.of(rsync));
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).gauges()).hasSize(gauges);
+
+        subject.streamDiff(now, List.of(rrdp), List.of(rsync)).forEach(diff -> diff.entries().close());
+        then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF).gauges()).hasSize(gauges);
+        for (var threshold : PublishedObjectsSummaryService.THRESHOLDS) {
+            then(meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF)
+                    .tags("lhs", "rrdp", "rhs", "rsync", "threshold", String.valueOf(threshold.getSeconds())).gauges())
+                    .hasSize(RepositoryObjectType.values().length);
+        }
+    }
+
+    @Test
+    public void itShouldCacheDifferencesUntilTheyChange() {
+        var object = RepositoryEntry.builder()
+                .sha256(HashCode.fromString("f19e8fbc6d520c06f3424ddf6a53cda830fc8ef4ca7074aa43ad97a42f946d50").asBytes())
+                .uri("rsync://example.org/file.cer")
+                .build();
+        rrdp.update(now, Stream.of(object));
+        rsync.update(now, Stream.empty());
+
+        assertThat(subject.difference(rrdp, rsync, now, minThreshold)).isEmpty();
+        assertThat(subject.difference(rrdp, rsync, now.plusSeconds(1), minThreshold)).isEmpty();
+        then(cacheLookups("hit")).isOne();
+        then(cacheLookups("miss")).isOne();
+
+        // The object reaches the threshold
+        assertThat(subject.difference(rrdp, rsync, now.plus(minThreshold), minThreshold)).containsExactly(object);
+        then(cacheLookups("miss")).isEqualTo(2);
+
+        // The other repository is updated
+        rsync.update(now.plus(minThreshold), Stream.of(object));
+        subject.updatePublishedObjectsDiff(now.plus(minThreshold), rsync, List.of(rrdp));
+        assertThat(subject.difference(rrdp, rsync, now.plus(minThreshold), minThreshold)).isEmpty();
+        then(cacheLookups("miss")).isEqualTo(3);
+        then(cacheLookups("hit")).isOne();
+    }
+
+    @Test
+    public void itShouldStreamDifferencesWithoutCachingTheirEntries() {
+        var objects = Stream.of("a.cer", "b.cer", "c.roa")
+                .map(name -> RepositoryEntry.builder().uri("rsync://example.org/" + name).sha256(Hashing.sha256().hashUnencodedChars(name).asBytes()).build())
+                .toList();
+        rrdp.update(now.minus(minThreshold), objects.stream());
+        rsync.update(now.minus(minThreshold), objects.stream().limit(1));
+
+        var certificates = new PublishedObjectsSummaryService.RepositoryDiffKey(rrdp.key(), rsync.key(), RepositoryObjectType.Certificate, minThreshold);
+        var streamed = subject.streamDiff(now, List.of(rrdp), List.of(rsync)).toList().stream()
+                .filter(diff -> diff.key().equals(certificates))
+                .findFirst()
+                .orElseThrow();
+        then(streamed.total()).isOne();
+        assertThat(streamed.entries()).containsExactly(objects.get(1));
+        // Only the counts of both directions are cached
+        then(cacheLookups("miss")).isEqualTo(2);
+        subject.streamDiff(now, List.of(rrdp), List.of(rsync)).forEach(diff -> diff.entries().close());
+        then(cacheLookups("hit")).isEqualTo(2);
+
+        assertThat(subject.difference(rrdp, rsync, now, minThreshold)).containsExactlyInAnyOrder(objects.get(1), objects.get(2));
+        then(cacheLookups("miss")).isEqualTo(3);
+    }
+
+    private double cacheLookups(String result) {
+        return meterRegistry.get(PublishedObjectMetrics.PUBLISHED_OBJECT_DIFF_CACHE).tag("result", result).counter().count();
+    }
+
     @Test
     public void itShouldDoRsyncDiff() {
         var now = Instant.now();
@@ -0,0 +1,79 @@
+package net.ripe.rpki.monitor.repositories;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingHookDispatcherTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CoalescingHookDispatcher dispatcher = new CoalescingHookDispatcher(2, 16, registry);
+    private final RepositoriesState state = RepositoriesState.init(List.of(
+            Triple.of("rrdp.ripe.net", "https://rrdp.ripe.net/", RepositoryTracker.Type.RRDP),
+            Triple.of("rpki.ripe.net", "rsync://rpki.ripe.net/", RepositoryTracker.Type.RSYNC)
+    ), Duration.ZERO);
+
+    @AfterEach
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void test_coalesces_updates_of_a_tracker() throws InterruptedException {
+        var started = new Semaphore(0);
+        var release = new CountDownLatch(1);
+        var versions = new CopyOnWriteArrayList<Long>();
+        state.dispatchHooksWith(dispatcher);
+        state.addHook("slow", tracker -> {
+            started.release();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            versions.add(tracker.lastUpdate().version());
+        });
+
+        var now = Instant.now();
+        state.updateByTag("rrdp.ripe.net", now, Stream.empty());
+        assertThat(started.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+
+        // While the hook runs: the first update queues it again, the others are coalesced
+        for (int i = 1; i <= 3; i++) {
+            state.updateByTag("rrdp.ripe.net", now.plusSeconds(i), Stream.empty());
+        }
+        release.countDown();
+        assertThat(started.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+        dispatcher.shutdown();
+        assertThat(dispatcher.awaitTermination(Duration.ofSeconds(10))).isTrue();
+
+        assertThat(versions).containsExactly(4L, 4L);
+        assertThat(registry.get(CoalescingHookDispatcher.HOOK_UPDATES).tag("result", "dispatched").counter().count()).isEqualTo(2);
+        assertThat(registry.get(CoalescingHookDispatcher.HOOK_UPDATES).tag("result", "coalesced").counter().count()).isEqualTo(2);
+        assertThat(registry.get(CoalescingHookDispatcher.HOOK_DURATION).tag("hook", "slow").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void test_failing_hook_does_not_stop_the_others() throws InterruptedException {
+        var called = new CountDownLatch(1);
+        state.dispatchHooksWith(dispatcher);
+        state.addHook("failing", tracker -> {
+            throw new IllegalStateException("failing hook");
+        });
+        state.addHook("next", tracker -> called.countDown());
+
+        state.updateByTag("rpki.ripe.net", Instant.now(), Stream.empty());
+        assertThat(called.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,167 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ObjectInternerTest {
+    private final Instant t = Instant.now();
+
+    private final RepositoryEntry object = new RepositoryEntry(
+            "rsync://example.com/repository/DEFAULT/xyz.cer",
+            HashCode.fromString("6b0b3985e254bcb00c0e20ad09747ac4799f294f2ebcce7d4d805e452e3297a1").asBytes(),
+            Optional.empty(),
+            Optional.empty()
+    );
+    private final RepositoryEntry otherObject = new RepositoryEntry(
+            "rsync://example.com/repository/DEFAULT/abc.roa",
+            HashCode.fromString("45cdf3f6082774e19fecf80817863c39e29a5a3646746125c55ed3209d3508ea").asBytes(),
+            Optional.empty(),
+            Optional.empty()
+    );
+
+    @Test
+    public void test_shares_entries_across_trackers() {
+        var interner = new HeapObjectInterner();
+        var core = tracker("core", interner);
+        var rrdp = tracker("rrdp", interner);
+        var copy = new RepositoryEntry(new String(object.getUri()), object.sha256().clone(), Optional.empty(), Optional.empty());
+        var withTimestamps = new RepositoryEntry(new String(object.getUri()), object.sha256().clone(), Optional.of(t), Optional.of(t.plusSeconds(3600)));
+
+        core.update(t, Stream.of(object));
+        rrdp.update(t, Stream.of(copy));
+
+        assertThat(interner.size()).isOne();
+        assertThat(rrdp.view(t).entries().findFirst()).containsSame(core.view(t).entries().findFirst().orElseThrow());
+
+        rrdp.update(t.plusSeconds(1), Stream.of(withTimestamps));
+        var rrdpEntry = rrdp.view(t.plusSeconds(1)).getObject(object.sha256(), object.getUri()).orElseThrow();
+        assertThat(rrdpEntry).isEqualTo(withTimestamps);
+        assertThat(rrdpEntry.getUri()).isSameAs(object.getUri());
+        assertThat(rrdpEntry.sha256()).isSameAs(object.sha256());
+    }
+
+    @Test
+    public void test_stable_ids_and_cleanup() {
+        assertStableIdsAndCleanup(RepositoryTracker.Storage.HEAP);
+    }
+
+    @Test
+    public void test_stable_ids_and_cleanup_off_heap() {
+        assertStableIdsAndCleanup(RepositoryTracker.Storage.OFF_HEAP);
+    }
+
+    @Test
+    public void test_off_heap_interner_keeps_nothing_per_object_on_heap() {
+        var interner = new OffHeapObjectInterner();
+        var core = tracker("core", interner, RepositoryTracker.Storage.OFF_HEAP);
+        var rrdp = tracker("rrdp", interner, RepositoryTracker.Storage.OFF_HEAP);
+
+        var objects = IntStream.range(0, 10_000).mapToObj(ObjectInternerTest::entry).toList();
+        core.update(t, objects.stream());
+        rrdp.update(t, objects.stream().skip(1));
+        assertThat(interner.size()).isEqualTo(10_000);
+        assertThat(core.difference(rrdp, t, Duration.ZERO)).containsExactly(objects.get(0));
+
+        // The entries of the trackers are not retained by the intern table
+        assertThat(interner.acquire(objects.get(1)).entry()).isSameAs(objects.get(1));
+        interner.release(objects.get(1));
+
+        // All state is in native memory: the on-heap fields are a fixed set of
+        // primitives and segments, whatever the number of objects.
+        assertThat(Arrays.stream(OffHeapObjectInterner.class.getDeclaredFields()).filter(field -> !Modifier.isStatic(field.getModifiers())))
+                .allSatisfy(field -> assertThat(field.getType().isPrimitive() || field.getType() == MemorySegment.class).isTrue());
+        var nativeBytes = interner.nativeBytes();
+        assertThat(nativeBytes).isGreaterThanOrEqualTo(10_000 * OffHeapObjectInterner.RECORD_SIZE);
+
+        // Ids are freed and re-used, without growing the table
+        core.update(t.plusSeconds(3601), Stream.empty());
+        rrdp.update(t.plusSeconds(3601), Stream.empty());
+        core.update(t.plusSeconds(7202), Stream.empty());
+        rrdp.update(t.plusSeconds(7202), Stream.empty());
+        assertThat(interner.size()).isZero();
+
+        core.update(t.plusSeconds(7203), objects.stream());
+        assertThat(interner.size()).isEqualTo(10_000);
+        assertThat(interner.nativeBytes()).isEqualTo(nativeBytes);
+    }
+
+    @Test
+    public void test_failed_update_releases_its_references() {
+        var interner = ObjectInterner.of(RepositoryTracker.Storage.OFF_HEAP);
+        var core = tracker("core", interner, RepositoryTracker.Storage.OFF_HEAP);
+        core.update(t, Stream.of(object));
+
+        // The stream fails after the first entry
+        assertThatThrownBy(() -> core.update(t.plusSeconds(1), Stream.of(otherObject, object).map(x -> {
+            if (x == object) {
+                throw new IllegalStateException("fetch failed");
+            }
+            return x;
+        }))).isInstanceOf(IllegalStateException.class);
+        assertThat(interner.size()).isOne();
+
+        // The store rejects an entry after all entries are interned
+        var truncatedHash = new RepositoryEntry("rsync://example.com/repository/DEFAULT/bad.roa", new byte[20], Optional.empty(), Optional.empty());
+        assertThatThrownBy(() -> core.update(t.plusSeconds(2), Stream.of(otherObject, truncatedHash)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(interner.size()).isOne();
+
+        // The tracker and the intern table are left as they were
+        assertThat(core.view(t.plusSeconds(2)).entries()).containsExactly(object);
+        core.update(t.plusSeconds(7200), Stream.empty());
+        core.update(t.plusSeconds(10801), Stream.empty());
+        assertThat(interner.size()).isZero();
+    }
+
+    private void assertStableIdsAndCleanup(RepositoryTracker.Storage storage) {
+        var interner = ObjectInterner.of(storage);
+        var core = tracker("core", interner, storage);
+        var rrdp = tracker("rrdp", interner, storage);
+
+        core.update(t, Stream.of(object, otherObject));
+        var id = interner.acquire(object).id();
+        interner.release(object);
+
+        rrdp.update(t, Stream.of(object));
+        core.update(t.plusSeconds(1), Stream.of(object));
+        assertThat(interner.acquire(object).id()).isEqualTo(id);
+        interner.release(object);
+
+        // otherObject is disposed in core, and purged after the grace period
+        assertThat(interner.size()).isEqualTo(2);
+        core.update(t.plusSeconds(3602), Stream.of(object));
+        assertThat(interner.size()).isOne();
+
+        core.update(t.plusSeconds(3603), Stream.empty());
+        rrdp.update(t.plusSeconds(3603), Stream.empty());
+        core.update(t.plusSeconds(7206), Stream.empty());
+        rrdp.update(t.plusSeconds(7206), Stream.empty());
+        assertThat(interner.size()).isZero();
+    }
+
+    private RepositoryTracker tracker(String tag, ObjectInterner interner) {
+        return tracker(tag, interner, RepositoryTracker.Storage.HEAP);
+    }
+
+    private RepositoryTracker tracker(String tag, ObjectInterner interner, RepositoryTracker.Storage storage) {
+        return RepositoryTracker.empty(tag, "https://example.com/" + tag, RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600), storage, interner);
+    }
+
+    private static RepositoryEntry entry(int i) {
+        var uri = "rsync://example.com/repository/DEFAULT/" + i + ".roa";
+        return new RepositoryEntry(uri, Hashing.sha256().hashUnencodedChars(uri).asBytes(), Optional.empty(), Optional.empty());
+    }
+}
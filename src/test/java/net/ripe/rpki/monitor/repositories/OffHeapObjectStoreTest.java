@@ -0,0 +1,87 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.hash.HashCode;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapObjectStoreTest {
+    private final Instant t = Instant.now();
+
+    private final RepositoryEntry object = new RepositoryEntry(
+            "rsync://example.com/repository/DEFAULT/xyz.cer",
+            HashCode.fromString("6b0b3985e254bcb00c0e20ad09747ac4799f294f2ebcce7d4d805e452e3297a1").asBytes(),
+            Optional.of(t),
+            Optional.of(t.plusSeconds(3600))
+    );
+    private final RepositoryEntry objectAtDiffPath = new RepositoryEntry(
+            "rsync://example.com/repository/data/xyz.cer",
+            object.sha256(),
+            Optional.empty(),
+            Optional.empty()
+    );
+
+    @Test
+    public void test_objects_round_trip() {
+        var repo = RepositoryTracker.with("repo", "https://example.com", RepositoryTracker.Type.RRDP, t, Stream.of(object, objectAtDiffPath), Duration.ZERO);
+        var offHeap = offHeapTracker("repo", t, Stream.of(object, objectAtDiffPath));
+
+        assertThat(offHeap.view(t).entries()).containsExactlyInAnyOrderElementsOf(repo.view(t).entries().toList());
+        assertThat(offHeap.view(t).getObject(object.sha256(), object.getUri())).hasValue(object);
+        assertThat(offHeap.view(t).getObject(objectAtDiffPath.sha256(), objectAtDiffPath.getUri())).hasValue(objectAtDiffPath);
+        assertThat(offHeap.view(t).getObject(new byte[32], object.getUri())).isEmpty();
+        assertThat(offHeap.inspect(object.getUri())).isEqualTo(Set.of(RepositoryTracker.TrackedObject.of(object, t)));
+    }
+
+    @Test
+    public void test_disposal_and_difference() {
+        var offHeap = offHeapTracker("repo", t, Stream.of(object, objectAtDiffPath));
+        var other = offHeapTracker("other", t, Stream.of(object));
+
+        offHeap.update(t.plusSeconds(300), Stream.of(object));
+
+        assertThat(offHeap.view(t).size()).isEqualTo(2);
+        assertThat(offHeap.view(t.plusSeconds(300)).size()).isOne();
+        assertThat(offHeap.inspect(objectAtDiffPath.getUri()))
+                .containsExactly(new RepositoryTracker.TrackedObject(objectAtDiffPath, t, Optional.of(t.plusSeconds(300))));
+        assertThat(offHeap.difference(other, t.plusSeconds(300), Duration.ZERO)).isEmpty();
+        assertThat(other.difference(offHeap, t.plusSeconds(300), Duration.ZERO)).isEmpty();
+    }
+
+    @Test
+    public void test_storage_size() {
+        var empty = RepositoryTracker.empty("repo", "https://example.com", RepositoryTracker.Type.RRDP, Duration.ZERO, RepositoryTracker.Storage.OFF_HEAP);
+        assertThat(empty.storageSize().recordBytes()).isZero();
+
+        var offHeap = offHeapTracker("repo", t, Stream.of(object, objectAtDiffPath));
+        assertThat(offHeap.storageSize().recordBytes()).isEqualTo(2 * OffHeapObjectStore.RECORD_SIZE);
+        assertThat(offHeap.storageSize().uriBytes()).isEqualTo(object.getUri().length() + objectAtDiffPath.getUri().length());
+        assertThat(offHeap.storageSize().indexBytes()).isPositive();
+        // The index of the tracker includes the orderings and bitsets of its snapshot
+        assertThat(offHeap.storageSize().indexBytes()).isGreaterThan(offHeap.snapshot().objects.storageSize().indexBytes());
+    }
+
+    @Test
+    public void test_object_types() {
+        var crl = new RepositoryEntry("rsync://example.com/repository/DEFAULT/xyz.crl", new byte[32], Optional.empty(), Optional.empty());
+        var store = new OffHeapObjectStore(Stream.of(object, crl).map(x -> RepositoryTracker.TrackedObject.of(x, t)).toList());
+
+        for (int slot = 0; slot < store.size(); slot++) {
+            assertThat(store.type(slot)).isEqualTo(store.get(slot).getObjectType());
+        }
+        assertThat(store.type(1)).isEqualTo(RepositoryObjectType.Crl);
+    }
+
+    private RepositoryTracker offHeapTracker(String tag, Instant t, Stream<RepositoryEntry> entries) {
+        var tracker = RepositoryTracker.empty(tag, "https://example.com", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600), RepositoryTracker.Storage.OFF_HEAP);
+        tracker.update(t, entries);
+        return tracker;
+    }
+}
@@ -0,0 +1,108 @@
+package net.ripe.rpki.monitor.repositories;
+
+import com.google.common.hash.Hashing;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PairDifferenceTest {
+    private static final List<Duration> THRESHOLDS = List.of(Duration.ZERO, Duration.ofSeconds(300), Duration.ofSeconds(600));
+
+    private final Instant t = Instant.now();
+
+    private final RepositoryEntry a = entry("a.cer");
+    private final RepositoryEntry b = entry("b.roa");
+    private final RepositoryEntry c = entry("c.mft");
+
+    private final RepositoryTracker core = RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ofSeconds(3600));
+    private final RepositoryTracker rrdp = RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600));
+
+    @Test
+    public void test_matches_full_difference_after_updates() {
+        core.update(t, Stream.of(a, b));
+        rrdp.update(t, Stream.of(a));
+        var coreToRrdp = new PairDifference(core, rrdp);
+        var rrdpToCore = new PairDifference(rrdp, core);
+        assertSameAsFullDifference(coreToRrdp, t);
+
+        core.update(t.plusSeconds(300), Stream.of(b, c));
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(300));
+        assertSameAsFullDifference(rrdpToCore, t.plusSeconds(300));
+
+        rrdp.update(t.plusSeconds(400), Stream.of(b, c));
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(400));
+        assertSameAsFullDifference(rrdpToCore, t.plusSeconds(400));
+
+        // Ages without updates
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(1000));
+        assertThat(rrdpToCore.at(t.plusSeconds(1000), THRESHOLDS).count(Duration.ZERO, RepositoryObjectType.Certificate)).isZero();
+    }
+
+    @Test
+    public void test_catches_up_with_coalesced_updates() {
+        core.update(t, Stream.of(a));
+        rrdp.update(t, Stream.of(a));
+        var coreToRrdp = new PairDifference(core, rrdp);
+        assertSameAsFullDifference(coreToRrdp, t);
+
+        // Within the recent deltas of the tracker
+        core.update(t.plusSeconds(1), Stream.of(a, b));
+        core.update(t.plusSeconds(2), Stream.of(a, b, c));
+        var evaluated = coreToRrdp.evaluated();
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(2));
+        assertThat(coreToRrdp.evaluated() - evaluated).isEqualTo(2);
+
+        // More updates than are kept
+        for (int i = 0; i <= TrackerSnapshot.RECENT_DELTAS; i++) {
+            rrdp.update(t.plusSeconds(3 + i), Stream.of(a, b).limit(i % 2 + 1));
+        }
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(3 + TrackerSnapshot.RECENT_DELTAS));
+    }
+
+    @Test
+    public void test_only_evaluates_the_changed_objects() {
+        var objects = IntStream.range(0, 10_000).mapToObj(i -> entry(i + ".roa")).toList();
+        core.update(t, objects.stream());
+        rrdp.update(t, objects.stream().skip(100));
+        var coreToRrdp = new PairDifference(core, rrdp);
+        assertSameAsFullDifference(coreToRrdp, t);
+        assertThat(coreToRrdp.evaluated()).isEqualTo(10_000);
+
+        // One object is published, one is withdrawn: only those are evaluated, whatever the number of objects.
+        core.update(t.plusSeconds(10), Stream.concat(objects.stream().skip(1), Stream.of(entry("new.roa"))));
+        rrdp.update(t.plusSeconds(20), objects.stream());
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(20));
+        assertThat(coreToRrdp.evaluated()).isEqualTo(10_000 + 2 + 100);
+
+        // Without updates, nothing is evaluated to age the difference
+        assertSameAsFullDifference(coreToRrdp, t.plusSeconds(1000));
+        assertThat(coreToRrdp.evaluated()).isEqualTo(10_000 + 2 + 100);
+    }
+
+    private void assertSameAsFullDifference(PairDifference difference, Instant now) {
+        var live = difference.at(now, THRESHOLDS);
+        var full = difference.lhs().countDifferences(difference.rhs(), now, THRESHOLDS);
+        for (var threshold : THRESHOLDS) {
+            for (var type : RepositoryObjectType.values()) {
+                assertThat(live.count(threshold, type)).isEqualTo(full.count(threshold, type));
+            }
+        }
+    }
+
+    private static RepositoryEntry entry(String name) {
+        return new RepositoryEntry(
+                "rsync://example.com/repository/DEFAULT/" + name,
+                Hashing.sha256().hashUnencodedChars(name).asBytes(),
+                Optional.empty(),
+                Optional.empty()
+        );
+    }
+}
@@ -34,10 +34,12 @@ class RepositoryEntryTest {
         var x = PublishedObjectEntry.builder()
                 .uri("rsync://rpki.ripe.net/repository/DEFAULT/xyz.cer")
                 .sha256Hex("781c4689f8c8cf65cfc00241c3dc75cb697df340be425ff4c2378b5de720f258")
+                .updatedAt(Instant.parse("2024-01-01T12:00:00Z"))
                 .build();
         var r = RepositoryEntry.from(x);
         assertThat(r.getUri()).isEqualTo(x.getUri());
         assertThat(r.getSha256()).isEqualTo(x.sha256Hex());
+        assertThat(r.creation()).isEqualTo(Optional.of(x.updatedAt()));
         assertThat(r.expiration()).isEqualTo(Optional.empty());
     }
 }
\ No newline at end of file
@@ -2,16 +2,24 @@ package net.ripe.rpki.monitor.repositories;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
+import net.ripe.rpki.commons.util.RepositoryObjectType;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class RepositoryTrackerTest {
 
@@ -75,6 +83,58 @@ class RepositoryTrackerTest {
             assertThat(repo.view(t.plusSeconds(300)).size()).isOne();
         }
 
+        @Test
+        public void test_entries() {
+            var obj1 = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/xyz.cer",
+                    HashCode.fromString("a6c0ffd45b7a799fbd1a303cb4322a1387e74cb22b80c9c54ed4378f22a81f0f").asBytes(),
+                    Optional.of(t),
+                    Optional.empty()
+            );
+            var obj2 = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/xyz.cer",
+                    HashCode.fromString("45cdf3f6082774e19fecf80817863c39e29a5a3646746125c55ed3209d3508ea").asBytes(),
+                    Optional.of(t),
+                    Optional.empty()
+            );
+            var repo = RepositoryTracker.with("tag", "https://example.com", RepositoryTracker.Type.CORE, t.minusSeconds(300), Stream.of(obj1), Duration.ofSeconds(3600));
+
+            repo.update(t, Stream.of(obj1, obj2));
+            repo.update(t.plusSeconds(300), Stream.of(obj2));
+
+            assertThat(repo.view(t.minusSeconds(600)).entries()).isEmpty();
+            assertThat(repo.view(t.minusSeconds(300)).entries()).containsExactly(obj1);
+            assertThat(repo.view(t).entries()).containsExactlyInAnyOrder(obj1, obj2);
+            assertThat(repo.view(t.plusSeconds(300)).entries()).containsExactly(obj2);
+        }
+
+        @Test
+        public void test_counts() {
+            var cer = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/xyz.cer",
+                    HashCode.fromString("a6c0ffd45b7a799fbd1a303cb4322a1387e74cb22b80c9c54ed4378f22a81f0f").asBytes(),
+                    Optional.empty(),
+                    Optional.empty()
+            );
+            var roa = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/xyz.roa",
+                    HashCode.fromString("45cdf3f6082774e19fecf80817863c39e29a5a3646746125c55ed3209d3508ea").asBytes(),
+                    Optional.empty(),
+                    Optional.empty()
+            );
+            var repo = RepositoryTracker.with("tag", "https://example.com", RepositoryTracker.Type.CORE, t, Stream.of(cer, roa), Duration.ofSeconds(3600));
+            repo.update(t.plusSeconds(300), Stream.of(roa));
+
+            assertThat(repo.counts().live()).isOne();
+            assertThat(repo.counts().disposed()).isOne();
+            assertThat(repo.counts().liveKeyBytes()).isEqualTo(32 + roa.getUri().length());
+
+            assertThat(repo.view(t.plusSeconds(600)).sizeByType()).isEqualTo(Map.of(RepositoryObjectType.Roa, 1L));
+            assertThat(repo.view(t).sizeByType()).isEqualTo(Map.of(RepositoryObjectType.Certificate, 1L, RepositoryObjectType.Roa, 1L));
+            assertThat(repo.view(t.plusSeconds(600)).size()).isOne();
+            assertThat(repo.view(t).size()).isEqualTo(2);
+        }
+
         @Test
         public void test_get_object() {
             var object = new RepositoryEntry(
@@ -153,6 +213,55 @@ class RepositoryTrackerTest {
             var result = repo.view(t).expiration(t.plusSeconds(3600 * 24));
             assertThat(result).isEqualTo(Set.of(expiresInOneHour));
         }
+
+        @Test
+        public void test_expiring_in_order() {
+            var expiresInTwoHours = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/abc.cer",
+                    Hashing.sha256().hashUnencodedChars("two hours").asBytes(),
+                    Optional.of(t),
+                    Optional.of(t.plusSeconds(7200))
+            );
+            var expiresInHalfAnHour = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/def.cer",
+                    Hashing.sha256().hashUnencodedChars("half an hour").asBytes(),
+                    Optional.of(t),
+                    Optional.of(t.plusSeconds(1800))
+            );
+            var repo = RepositoryTracker.with("tag", "https://example.com", RepositoryTracker.Type.CORE, t, Stream.of(expiresInTwoHours, expiresInOneHour, expiresInHalfAnHour), Duration.ofSeconds(3600));
+            repo.update(t.plusSeconds(60), Stream.of(expiresInTwoHours, expiresInOneHour));
+
+            assertThat(repo.view(t).expiringBefore(t.plusSeconds(3600 * 24))).containsExactly(expiresInHalfAnHour, expiresInOneHour, expiresInTwoHours);
+            assertThat(repo.view(t).expiringBefore(t.plusSeconds(3600))).containsExactly(expiresInHalfAnHour);
+            assertThat(repo.view(t.plusSeconds(60)).expiringBefore(t.plusSeconds(3600 * 24))).containsExactly(expiresInOneHour, expiresInTwoHours);
+        }
+
+        @Test
+        public void test_expiring_in_order_of_ties_and_distant_times() {
+            Function<String, RepositoryEntry> expiringAt = name -> new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/" + name + ".cer",
+                    Hashing.sha256().hashUnencodedChars(name).asBytes(),
+                    Optional.of(t),
+                    Optional.of(switch (name) {
+                        case "a", "b" -> t.plusSeconds(3600);
+                        case "c" -> Instant.MAX.minusSeconds(1);
+                        case "d" -> Instant.MAX;
+                        default -> Instant.MIN;
+                    })
+            );
+            var objects = Stream.of("d", "b", "c", "a", "e").map(expiringAt).toList();
+            var repo = RepositoryTracker.with("tag", "https://example.com", RepositoryTracker.Type.CORE, t, objects.stream(), Duration.ofSeconds(3600));
+
+            // Ties on the expiration are ordered by uri
+            assertThat(repo.view(t).expiringBefore(Instant.MAX))
+                    .extracting(RepositoryEntry::getUri)
+                    .containsExactly(
+                            "rsync://example.com/repository/DEFAULT/e.cer",
+                            "rsync://example.com/repository/DEFAULT/a.cer",
+                            "rsync://example.com/repository/DEFAULT/b.cer",
+                            "rsync://example.com/repository/DEFAULT/c.cer"
+                    );
+        }
     }
 
     @Nested
@@ -248,6 +357,301 @@ class RepositoryTrackerTest {
 
             assertThat(rsync.difference(core, t.plusSeconds(300), Duration.ofSeconds(300))).hasSize(0);;
         }
+
+        @Test
+        public void test_multiple_thresholds() {
+            var disposedObject = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/abc.roa",
+                    Hashing.sha256().hashUnencodedChars("disposed").asBytes(),
+                    Optional.empty(),
+                    Optional.empty()
+            );
+            var core = RepositoryTracker.with("core", "https://example.com", RepositoryTracker.Type.CORE, t.minusSeconds(600), Stream.of(oldObject, disposedObject), Duration.ofSeconds(3600));
+            var rrdp = RepositoryTracker.with("rrdp", "https://example.com", RepositoryTracker.Type.RRDP, t.minusSeconds(600), Stream.of(oldObject, disposedObject), Duration.ofSeconds(3600));
+
+            rrdp.update(t.minusSeconds(400), Stream.of(oldObject));
+            core.update(t, Stream.of(oldObject, disposedObject, newObject));
+
+            var thresholds = List.of(Duration.ofSeconds(600), Duration.ZERO, Duration.ofSeconds(300));
+            var diffs = core.differences(rrdp, t, thresholds);
+
+            assertThat(diffs.thresholds()).containsExactly(Duration.ZERO, Duration.ofSeconds(300), Duration.ofSeconds(600));
+            assertThat(diffs.entries(Duration.ZERO)).isEqualTo(Set.of(newObject, disposedObject));
+            assertThat(diffs.entries(Duration.ofSeconds(300))).isEqualTo(Set.of(disposedObject));
+            assertThat(diffs.entries(Duration.ofSeconds(600))).isEmpty();
+            for (var threshold : thresholds) {
+                assertThat(core.difference(rrdp, t, threshold)).isEqualTo(diffs.entries(threshold));
+            }
+
+            assertThat(diffs.entries(Duration.ZERO, RepositoryObjectType.Certificate)).isEqualTo(Set.of(newObject));
+            assertThat(diffs.count(Duration.ZERO, RepositoryObjectType.Certificate)).isOne();
+            assertThat(diffs.count(Duration.ZERO, RepositoryObjectType.Roa)).isOne();
+            assertThat(diffs.count(Duration.ofSeconds(300), RepositoryObjectType.Certificate)).isZero();
+            assertThat(diffs.count(Duration.ofSeconds(300), RepositoryObjectType.Manifest)).isZero();
+        }
+
+        @Test
+        public void test_fingerprint() {
+            var roa = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/abc.roa",
+                    Hashing.sha256().hashUnencodedChars("roa").asBytes(),
+                    Optional.empty(),
+                    Optional.empty()
+            );
+            var core = RepositoryTracker.with("core", "https://example.com", RepositoryTracker.Type.CORE, t.minusSeconds(600), Stream.of(oldObject, roa), Duration.ofSeconds(3600));
+            var rrdp = RepositoryTracker.with("rrdp", "https://example.com", RepositoryTracker.Type.RRDP, t, Stream.of(roa, oldObject), Duration.ofSeconds(3600));
+
+            assertThat(core.fingerprint()).isEqualTo(rrdp.fingerprint());
+            assertThat(core.fingerprint().all()).isNotZero();
+            assertThat(core.differences(rrdp, t, List.of(Duration.ZERO)).entries(Duration.ZERO)).isEmpty();
+
+            // Maintained incrementally: adding and removing an object restores the fingerprint
+            var before = core.fingerprint();
+            core.update(t.plusSeconds(1), Stream.of(oldObject, roa, newObject));
+            assertThat(core.fingerprint()).isNotEqualTo(before);
+            assertThat(core.fingerprint().sameObjects(rrdp.fingerprint(), RepositoryObjectType.Roa)).isTrue();
+            assertThat(core.fingerprint().sameObjects(rrdp.fingerprint(), RepositoryObjectType.Certificate)).isFalse();
+            assertThat(core.differences(rrdp, t.plusSeconds(1), List.of(Duration.ZERO)).entries(Duration.ZERO)).containsExactly(newObject);
+
+            core.update(t.plusSeconds(2), Stream.of(oldObject));
+            core.update(t.plusSeconds(3), Stream.of(oldObject, roa));
+            assertThat(core.fingerprint()).isEqualTo(before);
+            assertThat(core.fingerprint().byType()).containsOnlyKeys(RepositoryObjectType.Certificate, RepositoryObjectType.Roa);
+        }
+
+        @Test
+        public void test_update_report() {
+            var mft = entry("abc.mft");
+            var roa = entry("abc.roa");
+            var crl = entry("abc.crl");
+            var republishedMft = new RepositoryEntry(mft.getUri(), Hashing.sha256().hashUnencodedChars("next").asBytes(), Optional.empty(), Optional.empty());
+
+            var tracker = RepositoryTracker.empty("rrdp", "https://example.com", RepositoryTracker.Type.RRDP, Duration.ofSeconds(60));
+            tracker.update(t, Stream.of(mft, roa));
+            assertThat(tracker.lastReport().byType()).isEqualTo(Map.of(
+                    RepositoryObjectType.Manifest, new RepositoryTracker.Churn(1, 0, 0, 0),
+                    RepositoryObjectType.Roa, new RepositoryTracker.Churn(1, 0, 0, 0)
+            ));
+
+            tracker.update(t.plusSeconds(1), Stream.of(republishedMft, crl));
+            assertThat(tracker.lastReport().version()).isEqualTo(2);
+            assertThat(tracker.lastReport().byType()).isEqualTo(Map.of(
+                    RepositoryObjectType.Manifest, new RepositoryTracker.Churn(0, 1, 0, 0),
+                    RepositoryObjectType.Roa, new RepositoryTracker.Churn(0, 0, 1, 0),
+                    RepositoryObjectType.Crl, new RepositoryTracker.Churn(1, 0, 0, 0)
+            ));
+
+            // Disposed objects are purged after the grace period
+            tracker.update(t.plusSeconds(120), Stream.of(republishedMft, crl));
+            assertThat(tracker.lastReport().total()).isEqualTo(new RepositoryTracker.Churn(0, 0, 0, 2));
+
+            tracker.update(t.plusSeconds(121), Stream.of(republishedMft, crl));
+            assertThat(tracker.lastReport().byType()).isEmpty();
+            assertThat(tracker.totalChurn()).isEqualTo(Map.of(
+                    RepositoryObjectType.Manifest, new RepositoryTracker.Churn(1, 1, 0, 1),
+                    RepositoryObjectType.Roa, new RepositoryTracker.Churn(1, 0, 1, 1),
+                    RepositoryObjectType.Crl, new RepositoryTracker.Churn(1, 0, 0, 0)
+            ));
+        }
+
+        @Test
+        public void test_heap_storage_size() {
+            var tracker = RepositoryTracker.empty("rrdp", "https://example.com", RepositoryTracker.Type.RRDP, Duration.ofSeconds(60));
+            var empty = tracker.storageSize();
+            assertThat(empty.storage()).isEqualTo(RepositoryTracker.Storage.HEAP);
+            assertThat(empty.recordBytes()).isZero();
+            assertThat(empty.uriBytes()).isZero();
+
+            var roa = entry("abc.roa");
+            tracker.update(t, Stream.of(roa));
+            var one = tracker.storageSize();
+            // At least the uri and hash
+            assertThat(one.uriBytes()).isGreaterThan(roa.getUri().length() + roa.sha256().length);
+            assertThat(one.recordBytes()).isPositive();
+
+            // Disposed objects are retained until the grace period passes
+            tracker.update(t.plusSeconds(1), Stream.of(entry("abc.crl")));
+            assertThat(tracker.storageSize().totalBytes()).isGreaterThan(one.totalBytes());
+        }
+
+        @Test
+        public void test_publication_point_differences() {
+            var child = new RepositoryEntry(
+                    "rsync://example.com/repository/DEFAULT/child/abc.roa",
+                    Hashing.sha256().hashUnencodedChars("child").asBytes(),
+                    Optional.empty(),
+                    Optional.empty()
+            );
+            var core = RepositoryTracker.with("core", "https://example.com", RepositoryTracker.Type.CORE, t.minusSeconds(600), Stream.of(oldObject, child), Duration.ofSeconds(3600));
+            var rrdp = RepositoryTracker.with("rrdp", "https://example.com", RepositoryTracker.Type.RRDP, t.minusSeconds(600), Stream.of(oldObject, child), Duration.ofSeconds(3600));
+            assertThat(core.publicationPointDifferences(rrdp)).isEmpty();
+
+            rrdp.update(t, Stream.of(newObject, child));
+            assertThat(core.publicationPointDifferences(rrdp)).containsExactly(
+                    new RepositoryTracker.PublicationPointDifference("rsync://example.com/repository/DEFAULT/", 1, 1)
+            );
+            // Only the objects in the differing publication point are missing
+            assertThat(core.differences(rrdp, t, List.of(Duration.ZERO)).entries(Duration.ZERO)).containsExactly(oldObject);
+
+            rrdp.update(t.plusSeconds(1), Stream.of(newObject));
+            assertThat(rrdp.publicationPointDifferences(core)).containsExactly(
+                    new RepositoryTracker.PublicationPointDifference("rsync://example.com/repository/DEFAULT/", 1, 1),
+                    new RepositoryTracker.PublicationPointDifference("rsync://example.com/repository/DEFAULT/child/", 0, 1)
+            );
+        }
+    }
+
+    @Nested
+    class SharedInternTable {
+        private final List<Duration> thresholds = List.of(Duration.ZERO, Duration.ofSeconds(300), Duration.ofSeconds(600));
+
+        private final RepositoryEntry a = entry("a.cer");
+        private final RepositoryEntry b = entry("b.roa");
+        private final RepositoryEntry c = entry("c.mft");
+
+        @Test
+        public void test_same_difference_as_separate_trackers() {
+            var interner = new HeapObjectInterner();
+            var shared = List.of(
+                    RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ofSeconds(3600), RepositoryTracker.Storage.HEAP, interner),
+                    RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600), RepositoryTracker.Storage.HEAP, interner)
+            );
+            var separate = List.of(
+                    RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ofSeconds(3600)),
+                    RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600))
+            );
+
+            for (var trackers : List.of(shared, separate)) {
+                trackers.get(0).update(t, Stream.of(a, b));
+                trackers.get(1).update(t, Stream.of(a));
+            }
+            assertSameDifferences(shared, separate, t);
+            assertSameDifferences(shared, separate, t.plusSeconds(300));
+
+            for (var trackers : List.of(shared, separate)) {
+                trackers.get(0).update(t.plusSeconds(300), Stream.of(b, c));
+            }
+            assertSameDifferences(shared, separate, t.plusSeconds(300));
+            assertSameDifferences(shared, separate, t.plusSeconds(900));
+
+            for (var trackers : List.of(shared, separate)) {
+                trackers.get(1).update(t.plusSeconds(400), Stream.of(b, c));
+            }
+            assertSameDifferences(shared, separate, t.plusSeconds(400));
+            assertSameDifferences(shared, separate, t.plusSeconds(1000));
+            assertThat(shared.get(1).differences(shared.get(0), t.plusSeconds(400), thresholds).entries(Duration.ZERO)).isEmpty();
+        }
+
+        @Test
+        public void test_count_differences_without_entries() {
+            for (var storage : RepositoryTracker.Storage.values()) {
+                var interner = ObjectInterner.of(storage);
+                var core = RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ofSeconds(3600), storage, interner);
+                var rrdp = RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600), storage, interner);
+                var objects = IntStream.range(0, 10_000).mapToObj(i -> entry(i + ".roa")).toList();
+                core.update(t, objects.stream());
+                rrdp.update(t, objects.stream().limit(5_000));
+
+                var now = t.plusSeconds(600);
+                var counted = core.countDifferences(rrdp, now, thresholds);
+                var materialized = core.differences(rrdp, now, thresholds);
+
+                for (var threshold : thresholds) {
+                    assertThat(counted.count(threshold, RepositoryObjectType.Roa)).isEqualTo(5_000).isEqualTo(materialized.count(threshold, RepositoryObjectType.Roa));
+                    assertThat(counted.count(threshold, RepositoryObjectType.Certificate)).isZero();
+                }
+                assertThat(materialized.entries(Duration.ZERO)).isEqualTo(Set.copyOf(objects.subList(5_000, 10_000)));
+                assertThatThrownBy(() -> counted.entries(Duration.ZERO)).isInstanceOf(IllegalStateException.class);
+                assertThatThrownBy(() -> counted.entries(Duration.ZERO, RepositoryObjectType.Roa)).isInstanceOf(IllegalStateException.class);
+                assertThatThrownBy(() -> counted.stream(Duration.ZERO, RepositoryObjectType.Roa)).isInstanceOf(IllegalStateException.class);
+            }
+        }
+
+        @Test
+        public void test_stream_difference_in_stable_order() {
+            for (var storage : RepositoryTracker.Storage.values()) {
+                var interner = ObjectInterner.of(storage);
+                var core = RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ofSeconds(3600), storage, interner);
+                var rrdp = RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ofSeconds(3600), storage, interner);
+                var objects = IntStream.range(0, 1_000).mapToObj(i -> entry(i + (i % 2 == 0 ? ".roa" : ".cer"))).toList();
+                core.update(t, objects.stream().limit(500));
+                core.update(t.plusSeconds(300), objects.stream());
+                rrdp.update(t.plusSeconds(300), objects.stream().filter(x -> objects.indexOf(x) % 3 == 0));
+
+                var now = t.plusSeconds(600);
+                var all = core.streamDifference(rrdp, now, Duration.ZERO, RepositoryObjectType.Roa).toList();
+                assertThat(all).containsExactlyInAnyOrderElementsOf(core.differences(rrdp, now, thresholds).entries(Duration.ZERO, RepositoryObjectType.Roa));
+                // Pages of the stream are consecutive parts of it
+                assertThat(core.streamDifference(rrdp, now, Duration.ZERO, RepositoryObjectType.Roa).skip(100).limit(50).toList())
+                        .isEqualTo(all.subList(100, 150));
+                // Only the objects first seen before the threshold
+                assertThat(core.streamDifference(rrdp, now, Duration.ofSeconds(600), RepositoryObjectType.Roa))
+                        .hasSize((int) core.countDifferences(rrdp, now, thresholds).count(Duration.ofSeconds(600), RepositoryObjectType.Roa))
+                        .allSatisfy(x -> assertThat(objects.indexOf(x)).isLessThan(500));
+            }
+        }
+
+        @Test
+        public void test_differences_while_updating() throws Exception {
+            var interner = new HeapObjectInterner();
+            var core = RepositoryTracker.empty("core", "https://example.com/core", RepositoryTracker.Type.CORE, Duration.ZERO, RepositoryTracker.Storage.HEAP, interner);
+            var rrdp = RepositoryTracker.empty("rrdp", "https://example.com/rrdp", RepositoryTracker.Type.RRDP, Duration.ZERO, RepositoryTracker.Storage.HEAP, interner);
+            // The repositories never have an object in common: all live objects of core are missing
+            // from rrdp. Every update replaces all objects and purges the ones disposed before, so
+            // the ids of the replaced snapshots are freed and re-used by the other tracker all the time.
+            IntFunction<Stream<RepositoryEntry>> coreObjects = round -> IntStream.range(0, 64).mapToObj(i -> entry("core-" + round + "-" + i + ".roa"));
+            IntFunction<Stream<RepositoryEntry>> rrdpObjects = round -> IntStream.range(0, 64).mapToObj(i -> entry("rrdp-" + round + "-" + i + ".roa"));
+            core.update(t, coreObjects.apply(0));
+            rrdp.update(t, rrdpObjects.apply(0));
+
+            var later = t.plus(Duration.ofDays(1));
+            var executor = Executors.newFixedThreadPool(3);
+            try {
+                var updates = executor.submit(() -> {
+                    for (int round = 1; round <= 2_000; round++) {
+                        core.update(t.plusMillis(round), coreObjects.apply(round));
+                        rrdp.update(t.plusMillis(round), rrdpObjects.apply(round));
+                    }
+                });
+                var differences = IntStream.range(0, 2).mapToObj(i -> executor.submit(() -> {
+                    while (!updates.isDone()) {
+                        assertThat(core.countDifferences(rrdp, later, List.of(Duration.ZERO)).count(Duration.ZERO, RepositoryObjectType.Roa)).isEqualTo(64);
+                        assertThat(core.differences(rrdp, later, List.of(Duration.ZERO)).entries(Duration.ZERO))
+                                .hasSize(64)
+                                .allSatisfy(x -> assertThat(x.getUri()).contains("/core-"));
+                    }
+                    return null;
+                })).toList();
+
+                updates.get();
+                for (var difference : differences) {
+                    difference.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // Without pins left, only the live and disposed objects of the last snapshots are referenced.
+            assertThat(interner.size()).isEqualTo(4 * 64);
+        }
+
+        private void assertSameDifferences(List<RepositoryTracker> shared, List<RepositoryTracker> separate, Instant now) {
+            for (var pair : List.of(List.of(0, 1), List.of(1, 0))) {
+                var expected = separate.get(pair.get(0)).differences(separate.get(pair.get(1)), now, thresholds);
+                var actual = shared.get(pair.get(0)).differences(shared.get(pair.get(1)), now, thresholds);
+                var counted = shared.get(pair.get(0)).countDifferences(shared.get(pair.get(1)), now, thresholds);
+                for (var threshold : thresholds) {
+                    assertThat(actual.entries(threshold)).isEqualTo(expected.entries(threshold));
+                    for (var type : RepositoryObjectType.values()) {
+                        assertThat(counted.count(threshold, type)).isEqualTo(expected.count(threshold, type));
+                        for (var trackers : List.of(shared, separate)) {
+                            assertThat(trackers.get(pair.get(0)).streamDifference(trackers.get(pair.get(1)), now, threshold, type))
+                                    .containsExactlyInAnyOrderElementsOf(expected.entries(threshold, type));
+                        }
+                    }
+                }
+            }
+        }
     }
 
     @Nested
@@ -277,4 +681,13 @@ class RepositoryTrackerTest {
             assertThat(view.getObject(objectAtDiffPath.sha256(), objectAtDiffPath.getUri())).hasValue(objectAtDiffPath);
         }
     }
+
+    private static RepositoryEntry entry(String name) {
+        return new RepositoryEntry(
+                "rsync://example.com/repository/DEFAULT/" + name,
+                Hashing.sha256().hashUnencodedChars(name).asBytes(),
+                Optional.empty(),
+                Optional.empty()
+        );
+    }
 }